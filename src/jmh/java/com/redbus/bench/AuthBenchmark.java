@@ -0,0 +1,38 @@
+package com.redbus.bench;
+
+import com.redbus.service.AuthService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token verification as done on every authenticated request: a repeat token with the verified-token cache, and a
+ * full signature check with the cache disabled.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AuthBenchmark {
+
+    @Param({"0", "100000"})
+    public int tokenCacheEntries;
+
+    private AuthService authService;
+    private String token;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkFixture fixture = BenchmarkFixture.empty();
+        authService = new AuthService(fixture.userRepository, BenchmarkFixture.JWT_SECRET, tokenCacheEntries,
+                fixture.passwordHasher);
+        token = authService.signup("bench@example.com", "password");
+    }
+
+    @Benchmark
+    public String extractUserIdFromToken() {
+        return authService.extractUserIdFromToken(token);
+    }
+}
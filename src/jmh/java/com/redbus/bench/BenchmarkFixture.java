@@ -0,0 +1,104 @@
+package com.redbus.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.redbus.config.LoadTestDataGenerator;
+import com.redbus.journal.FsyncPolicy;
+import com.redbus.journal.MutationJournal;
+import com.redbus.journal.SnapshotManager;
+import com.redbus.journal.SnapshotParticipant;
+import com.redbus.model.Trip;
+import com.redbus.pricing.FlatPerKmPricingStrategy;
+import com.redbus.pricing.PricingService;
+import com.redbus.pricing.PricingStrategyFactory;
+import com.redbus.pricing.SlabPricingStrategy;
+import com.redbus.pricing.SurgePricingStrategy;
+import com.redbus.repository.impl.*;
+import com.redbus.service.AuthService;
+import com.redbus.service.InventoryService;
+import com.redbus.service.OrderService;
+import com.redbus.service.PasswordHasher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The application's repositories and services wired by hand, without a Spring context, and filled with the same
+ * seeded synthetic data the {@code loadtest} profile generates. The journal is disabled so benchmarks measure the
+ * in-memory paths only.
+ */
+public final class BenchmarkFixture {
+
+    public static final String JWT_SECRET = "mySecretKeyForRedBusBackendApplicationThatIsLongEnoughForHS256Algorithm";
+    public static final long SEED = 42;
+
+    public final MutationJournal journal = new MutationJournal(false, Path.of("target/bench-journal"),
+            FsyncPolicy.NEVER, Duration.ofMillis(50), DataSize.ofMegabytes(64), 1024, new ObjectMapper());
+    public final SearchResultCache searchCache = new SearchResultCache(100_000, Duration.ofMinutes(5),
+            Duration.ofSeconds(30), new SimpleMeterRegistry());
+
+    public final InMemoryCityRepository cityRepository = new InMemoryCityRepository();
+    public final InMemoryBusRepository busRepository = new InMemoryBusRepository();
+    public final InMemoryUserRepository userRepository = new InMemoryUserRepository(journal);
+    public final InMemoryBookingRepository bookingRepository = new InMemoryBookingRepository(journal);
+    public final InMemoryPaymentRepository paymentRepository = new InMemoryPaymentRepository(journal);
+    public final InMemoryInventoryRepository inventoryRepository =
+            new InMemoryInventoryRepository(searchCache, cityRepository, busRepository, journal,
+                    new InMemoryLockRepository(1024, new SimpleMeterRegistry()));
+
+    public final PricingService pricingService = new PricingService(new PricingStrategyFactory(
+            new SlabPricingStrategy(), new FlatPerKmPricingStrategy(), new SurgePricingStrategy()));
+    public final InventoryService inventoryService =
+            new InventoryService(inventoryRepository, cityRepository, pricingService);
+    // The reservation expiry worker is not started: benchmarks release their own bookings
+    public final OrderService orderService = new OrderService(bookingRepository, inventoryRepository,
+            inventoryService, pricingService, cityRepository);
+    public final PasswordHasher passwordHasher = new PasswordHasher(10, 0, 1024);
+    public final AuthService authService = new AuthService(userRepository, JWT_SECRET, 100_000, passwordHasher);
+
+    /**
+     * An empty fixture, for benchmarks that measure loading data.
+     */
+    public static BenchmarkFixture empty() {
+        return new BenchmarkFixture();
+    }
+
+    /**
+     * A fixture with {@code days} days of {@code tripsPerDay} trips over {@code cities} cities, each trip with
+     * {@code stops} intermediate stops and {@code bookingDensity} of its seats already booked.
+     */
+    public static BenchmarkFixture generate(int cities, int days, int tripsPerDay, int stops, double bookingDensity) {
+        BenchmarkFixture fixture = new BenchmarkFixture();
+        fixture.generator(cities, days, tripsPerDay, stops, bookingDensity).run();
+        return fixture;
+    }
+
+    public LoadTestDataGenerator generator(int cities, int days, int tripsPerDay, int stops, double bookingDensity) {
+        return new LoadTestDataGenerator(cityRepository, busRepository, inventoryRepository, bookingRepository,
+                userRepository, orderService, SEED, cities, Math.max(1, cities * 4), 1000, days, tripsPerDay, stops,
+                bookingDensity, 0.1);
+    }
+
+    public SnapshotManager snapshotManager(Path directory) {
+        List<SnapshotParticipant> participants = List.of(cityRepository, busRepository, userRepository,
+                bookingRepository, paymentRepository, inventoryRepository);
+        return new SnapshotManager(true, directory, journal, participants);
+    }
+
+    /**
+     * End-to-end routes of generated trips, in a stable order, for benchmarks to cycle through.
+     */
+    public List<Route> routes(int limit) {
+        return inventoryRepository.findAllTrips().stream()
+                .sorted(Comparator.comparing(Trip::getTripId))
+                .limit(limit)
+                .map(trip -> new Route(trip.getTripId(), trip.getSourceCityId(), trip.getDestCityId(), trip.getDate()))
+                .toList();
+    }
+
+    public record Route(String tripId, String sourceCityId, String destCityId, String date) {
+    }
+}
@@ -0,0 +1,62 @@
+package com.redbus.bench;
+
+import com.redbus.model.Booking;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code OrderService.createBooking} with 64 threads booking the same handful of trips. Each booking is released
+ * straight away so seats do not run out; the fixture is rebuilt every iteration so bookings do not pile up.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(64)
+@State(Scope.Benchmark)
+public class BookingBenchmark {
+
+    private static final int HOT_TRIPS = 16;
+
+    @Param({"1000"})
+    public int trips;
+
+    private BenchmarkFixture fixture;
+    private List<BenchmarkFixture.Route> hotRoutes;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        fixture = BenchmarkFixture.generate(100, 1, trips, 3, 0);
+        hotRoutes = fixture.routes(HOT_TRIPS);
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        int next(int size) {
+            if (next >= size) {
+                next = 0;
+            }
+            return next++;
+        }
+    }
+
+    @Benchmark
+    public void createBooking(Cursor cursor, Blackhole blackhole) {
+        BenchmarkFixture.Route route = hotRoutes.get(cursor.next(HOT_TRIPS));
+        try {
+            Booking booking = fixture.orderService.createBooking("LTUSER0000001", route.tripId(),
+                    route.sourceCityId(), route.destCityId(), 1);
+            fixture.orderService.releaseBooking(booking.getBookingId());
+            blackhole.consume(booking);
+        } catch (IllegalArgumentException e) {
+            // Sold out for the moment: every seat of the trip is held by another thread
+            blackhole.consume(e);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.redbus.bench;
+
+import com.redbus.dto.SearchResponseItem;
+import com.redbus.model.TripPart;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Search and route resolution over the inventory: the raw route index lookup, the cached search with its
+ * projection, and resolving the parts of a booked route.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InventoryBenchmark {
+
+    @Param({"1000", "10000"})
+    public int tripsPerDay;
+
+    @Param({"7"})
+    public int days;
+
+    private BenchmarkFixture fixture;
+    private List<BenchmarkFixture.Route> routes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = BenchmarkFixture.generate(100, days, tripsPerDay, 3, 0.3);
+        routes = fixture.routes(4096);
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        BenchmarkFixture.Route next(List<BenchmarkFixture.Route> routes) {
+            if (next >= routes.size()) {
+                next = 0;
+            }
+            return routes.get(next++);
+        }
+    }
+
+    @Benchmark
+    public List<String> searchTrips(Cursor cursor) {
+        BenchmarkFixture.Route route = cursor.next(routes);
+        return fixture.inventoryRepository.searchTrips(route.sourceCityId(), route.destCityId(), route.date());
+    }
+
+    @Benchmark
+    public List<SearchResponseItem> search(Cursor cursor) {
+        BenchmarkFixture.Route route = cursor.next(routes);
+        return fixture.inventoryService.search(route.sourceCityId(), route.destCityId(), route.date());
+    }
+
+    @Benchmark
+    public List<TripPart> findSegmentsForRoute(Cursor cursor) {
+        BenchmarkFixture.Route route = cursor.next(routes);
+        return fixture.inventoryService.findSegmentsForRoute(route.tripId(), route.sourceCityId(), route.destCityId());
+    }
+}
@@ -0,0 +1,65 @@
+package com.redbus.bench;
+
+import com.redbus.model.Trip;
+import com.redbus.service.AuthService;
+import com.redbus.service.PasswordHasher;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A login storm next to search traffic: 60 threads log in while 4 search. With four hashing threads BCrypt is held
+ * to four cores and surplus logins are shed with {@link PasswordHasher.BusyException}; with 64 it runs about as wide
+ * as hashing on the request threads did. Compare login throughput with the search p99 of each run.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Group)
+public class LoginStormBenchmark {
+
+    @Param({"4", "64"})
+    public int hashThreads;
+
+    private BenchmarkFixture fixture;
+    private PasswordHasher passwordHasher;
+    private AuthService authService;
+    private List<BenchmarkFixture.Route> routes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = BenchmarkFixture.generate(20, 1, 1000, 3, 0);
+        routes = fixture.routes(1000);
+        passwordHasher = new PasswordHasher(10, hashThreads, 256);
+        authService = new AuthService(fixture.userRepository, BenchmarkFixture.JWT_SECRET, 100_000, passwordHasher);
+        authService.signup("storm@example.com", "password");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        passwordHasher.shutdown();
+    }
+
+    @Benchmark
+    @Group("storm")
+    @GroupThreads(60)
+    public String login() {
+        try {
+            return authService.login("storm@example.com", "password");
+        } catch (PasswordHasher.BusyException e) {
+            return null;
+        }
+    }
+
+    @Benchmark
+    @Group("storm")
+    @GroupThreads(4)
+    public List<Trip> search() {
+        BenchmarkFixture.Route route = routes.get(ThreadLocalRandom.current().nextInt(routes.size()));
+        return fixture.inventoryService.searchTrips(route.sourceCityId(), route.destCityId(), route.date());
+    }
+}
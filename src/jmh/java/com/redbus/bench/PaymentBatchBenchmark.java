@@ -0,0 +1,51 @@
+package com.redbus.bench;
+
+import com.redbus.gateway.BatchingPaymentClient;
+import com.redbus.gateway.ChargeRequest;
+import com.redbus.gateway.ChargeResult;
+import com.redbus.gateway.MockPaymentGateway;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A burst of 512 concurrent payments through the batching gateway client against a gateway with a fixed 20 ms round
+ * trip: with the number of concurrent batches fixed, throughput should grow with the batch size.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(512)
+@State(Scope.Benchmark)
+public class PaymentBatchBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int batchSize;
+
+    private BatchingPaymentClient client;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("bench-gateway-");
+        executor.setVirtualThreads(true);
+        client = new BatchingPaymentClient(new MockPaymentGateway(Duration.ofMillis(20), 0.9), executor,
+                batchSize, Duration.ofMillis(5), 4, 100_000, new SimpleMeterRegistry());
+        client.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        client.stop();
+    }
+
+    @Benchmark
+    public ChargeResult charge() {
+        return client.submit(new ChargeRequest(UUID.randomUUID().toString(), "BENCH", 10_000, "credit")).join();
+    }
+}
@@ -0,0 +1,48 @@
+package com.redbus.bench;
+
+import com.redbus.model.City;
+import com.redbus.model.PricingType;
+import com.redbus.model.Trip;
+import com.redbus.pricing.FlatPerKmPricingStrategy;
+import com.redbus.pricing.PricingService;
+import com.redbus.pricing.PricingStrategyFactory;
+import com.redbus.pricing.SlabPricingStrategy;
+import com.redbus.pricing.SurgePricingStrategy;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code PricingService.calculatePrice} for each pricing strategy, Bangalore to Mumbai.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PricingBenchmark {
+
+    @Param({"SLAB_50_FIRST_10KM_THEN_25_PER_10KM", "FLAT_PER_KM", "SURGE_BY_OCCUPANCY"})
+    public PricingType pricingType;
+
+    private PricingService pricingService;
+    private Trip trip;
+    private City source;
+    private City destination;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        pricingService = new PricingService(new PricingStrategyFactory(
+                new SlabPricingStrategy(), new FlatPerKmPricingStrategy(), new SurgePricingStrategy()));
+        trip = Trip.builder().tripId("T1").busId("BUS001").date("2030-01-01")
+                .sourceCityId("BLR").destCityId("MUM").capacity(40).pricingType(pricingType).build();
+        source = City.builder().cityId("BLR").name("Bangalore").latitude(12.9716).longitude(77.5946).build();
+        destination = City.builder().cityId("MUM").name("Mumbai").latitude(19.0760).longitude(72.8777).build();
+    }
+
+    @Benchmark
+    public long calculatePrice() {
+        return pricingService.calculatePrice(trip, source, destination, 2, 25, 40);
+    }
+}
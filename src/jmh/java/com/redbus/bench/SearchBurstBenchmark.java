@@ -0,0 +1,47 @@
+package com.redbus.bench;
+
+import com.redbus.model.Trip;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A burst of searches for one route while its cached result keeps being invalidated, as happens when a trip on
+ * a popular route is re-upserted: 63 searchers race one invalidator, and concurrent misses are coalesced into a
+ * single index lookup.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Group)
+public class SearchBurstBenchmark {
+
+    @Param({"1000", "10000"})
+    public int tripsPerDay;
+
+    private BenchmarkFixture fixture;
+    private BenchmarkFixture.Route route;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = BenchmarkFixture.generate(20, 1, tripsPerDay, 3, 0);
+        route = fixture.routes(1).get(0);
+    }
+
+    @Benchmark
+    @Group("burst")
+    @GroupThreads(63)
+    public List<Trip> search() {
+        return fixture.inventoryService.searchTrips(route.sourceCityId(), route.destCityId(), route.date());
+    }
+
+    @Benchmark
+    @Group("burst")
+    @GroupThreads(1)
+    public void invalidate() {
+        fixture.inventoryRepository.invalidateTripIdsInRedis(route.sourceCityId(), route.destCityId(), route.date());
+    }
+}
@@ -0,0 +1,78 @@
+package com.redbus.bench;
+
+import com.redbus.model.TripPart;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Seat counter updates: a single part resolved by id as the inventory grows, and all-or-nothing reservation of
+ * a whole route with 64 threads contending for the same few trips.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SeatBenchmark {
+
+    private static final int HOT_TRIPS = 16;
+
+    @Param({"1000", "100000", "1000000"})
+    public int trips;
+
+    private BenchmarkFixture fixture;
+    private List<String> partIds;
+    private List<List<String>> hotRoutes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = BenchmarkFixture.generate(100, 1, trips, 3, 0);
+        List<BenchmarkFixture.Route> routes = fixture.routes(4096);
+        partIds = routes.stream()
+                .map(route -> fixture.inventoryRepository.findPartsByTrip(route.tripId()).get(0).getTripPartId())
+                .toList();
+        hotRoutes = routes.subList(0, HOT_TRIPS).stream()
+                .map(route -> fixture.inventoryRepository.findPartsByTrip(route.tripId()).stream()
+                        .map(TripPart::getTripPartId)
+                        .toList())
+                .toList();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        int next(int size) {
+            if (next >= size) {
+                next = 0;
+            }
+            return next++;
+        }
+    }
+
+    // Takes a seat and gives it back, so counters stay where they started
+    @Benchmark
+    public boolean decrementSeats(Cursor cursor) {
+        String partId = partIds.get(cursor.next(partIds.size()));
+        boolean taken = fixture.inventoryRepository.decrementSeats(partId, 1);
+        if (taken) {
+            fixture.inventoryRepository.incrementSeats(partId, 1);
+        }
+        return taken;
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void reserveRouteContended(Cursor cursor, Blackhole blackhole) {
+        List<String> route = hotRoutes.get(cursor.next(HOT_TRIPS));
+        boolean reserved = fixture.inventoryRepository.reserveSeats(route, 1);
+        if (reserved) {
+            fixture.inventoryRepository.releaseSeats(route, 1);
+        }
+        blackhole.consume(reserved);
+    }
+}
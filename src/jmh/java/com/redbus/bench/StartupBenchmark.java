@@ -0,0 +1,71 @@
+package com.redbus.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Cold start of a full dataset: restoring it from a binary snapshot against generating and seeding it through the
+ * batch ingest path.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+
+    private static final int CITIES = 200;
+    private static final int DAYS = 10;
+
+    @Param({"1000", "10000"})
+    public int tripsPerDay;
+
+    private Path snapshotDirectory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        snapshotDirectory = Files.createTempDirectory("redbus-snapshot-bench");
+        BenchmarkFixture fixture = BenchmarkFixture.generate(CITIES, DAYS, tripsPerDay, 3, 0.3);
+        var snapshots = fixture.snapshotManager(snapshotDirectory);
+        snapshots.recoveryCompleted();
+        snapshots.write();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(snapshotDirectory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+    @Benchmark
+    public BenchmarkFixture loadSnapshot() throws IOException {
+        BenchmarkFixture fixture = BenchmarkFixture.empty();
+        OptionalLong loaded = fixture.snapshotManager(snapshotDirectory).load();
+        if (loaded.isEmpty()) {
+            throw new IllegalStateException("No snapshot in " + snapshotDirectory);
+        }
+        fixture.orderService.rebuildSeatCounts();
+        return fixture;
+    }
+
+    @Benchmark
+    public BenchmarkFixture seed() {
+        return BenchmarkFixture.generate(CITIES, DAYS, tripsPerDay, 3, 0.3);
+    }
+}
@@ -0,0 +1,263 @@
+package com.redbus.bench;
+
+import com.redbus.Main;
+import com.redbus.model.Trip;
+import com.redbus.repository.InventoryRepository;
+import com.redbus.service.AuthService;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+/**
+ * Throughput and latency of the whole application over HTTP with platform-thread and with virtual-thread request
+ * handling. Not a JMH benchmark: for each mode it boots the application on a random port with the
+ * {@code loadtest} data, then drives it with closed-loop clients, one virtual thread each, at every concurrency
+ * level in turn. Clients mostly search, and now and then book a seat and pay for it.
+ *
+ * <p>Run with {@code mvn -Pbench compile exec:java -Dexec.mainClass=com.redbus.bench.ThreadModeLoadBenchmark}.
+ * System properties: {@code load.clients} (default {@code 1000,5000,10000}), {@code load.seconds} (30),
+ * {@code load.warmup-seconds} (10), {@code load.think-ms} (20) and {@code load.modes} ({@code platform,virtual}).
+ * Results are printed and written to {@code target/thread-mode-load.csv}. Clients and server share the machine,
+ * so compare the modes with each other rather than reading the numbers as capacity; 10k clients need an open
+ * file limit above 20k.
+ */
+public final class ThreadModeLoadBenchmark {
+
+    private static final long SEED = 42;
+    private static final int BOOKING_PERCENT = 10;
+    private static final int TOKENS = 256;
+    private static final Pattern BOOKING_ID = Pattern.compile("\"bookingId\"\\s*:\\s*\"([^\"]+)\"");
+
+    private ThreadModeLoadBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] clientCounts = Arrays.stream(System.getProperty("load.clients", "1000,5000,10000").split(","))
+                .mapToInt(value -> Integer.parseInt(value.trim()))
+                .toArray();
+        Duration measurement = Duration.ofSeconds(Long.getLong("load.seconds", 30));
+        Duration warmup = Duration.ofSeconds(Long.getLong("load.warmup-seconds", 10));
+        long thinkMillis = Long.getLong("load.think-ms", 20);
+        String[] modes = System.getProperty("load.modes", "platform,virtual").split(",");
+        int maxClients = Arrays.stream(clientCounts).max().orElse(1);
+
+        List<String> lines = new ArrayList<>();
+        lines.add("mode,clients,requests,errors,throughput_rps,p50_ms,p99_ms,p999_ms");
+        for (String mode : modes) {
+            boolean virtual = mode.trim().equals("virtual");
+            try (ConfigurableApplicationContext app = start(virtual, maxClients)) {
+                Target target = Target.of(app);
+                run(target, clientCounts[0], warmup, thinkMillis);
+                for (int clients : clientCounts) {
+                    Result result = run(target, clients, measurement, thinkMillis);
+                    String line = String.format("%s,%d,%d,%d,%.0f,%.2f,%.2f,%.2f", mode.trim(), clients,
+                            result.requests(), result.errors(), result.throughput(), result.percentileMillis(0.50),
+                            result.percentileMillis(0.99), result.percentileMillis(0.999));
+                    System.out.println(line);
+                    lines.add(line);
+                }
+            }
+        }
+
+        Path report = Path.of("target", "thread-mode-load.csv");
+        Files.createDirectories(report.getParent());
+        Files.write(report, lines);
+        System.out.println(String.join(System.lineSeparator(), lines));
+    }
+
+    private static ConfigurableApplicationContext start(boolean virtual, int maxClients) {
+        return SpringApplication.run(Main.class,
+                "--server.port=0",
+                "--spring.profiles.active=loadtest",
+                "--spring.threads.virtual.enabled=" + virtual,
+                "--server.tomcat.max-connections=" + (maxClients + 1000),
+                "--server.tomcat.accept-count=" + maxClients,
+                "--redbus.loadtest.cities=100",
+                "--redbus.loadtest.buses=400",
+                "--redbus.loadtest.users=" + TOKENS,
+                "--redbus.loadtest.days=2",
+                "--redbus.loadtest.trips-per-day=5000",
+                "--logging.level.root=WARN",
+                "--logging.level.com.redbus=WARN");
+    }
+
+    private static Result run(Target target, int clients, Duration duration, long thinkMillis)
+            throws InterruptedException {
+        LatencyLog[] logs = new LatencyLog[clients];
+        long deadline = System.nanoTime() + duration.toNanos();
+        try (HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+             ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                LatencyLog log = logs[i] = new LatencyLog();
+                int client = i;
+                executor.execute(() -> new Client(target, http, log, new SplittableRandom(SEED + client),
+                        target.tokens().get(client % target.tokens().size()), deadline, thinkMillis).run());
+            }
+        }
+        return Result.of(logs, duration.toNanos());
+    }
+
+    // One simulated user: search, sometimes book and pay, think, repeat until the deadline
+    private record Client(Target target, HttpClient http, LatencyLog log, SplittableRandom random, String token,
+                          long deadline, long thinkMillis) implements Runnable {
+
+        @Override
+        public void run() {
+            while (System.nanoTime() < deadline) {
+                BenchmarkFixture.Route route = target.routes().get(random.nextInt(target.routes().size()));
+                if (random.nextInt(100) < BOOKING_PERCENT) {
+                    String response = send(HttpRequest.newBuilder(target.uri("/v1/bookings"))
+                            .header("Content-Type", "application/json")
+                            .header("Authorization", "Bearer " + token)
+                            .header("Idempotency-Key", UUID.randomUUID().toString())
+                            .POST(HttpRequest.BodyPublishers.ofString(String.format(
+                                    "{\"tripId\":\"%s\",\"sourceCityId\":\"%s\",\"destCityId\":\"%s\",\"seats\":1}",
+                                    route.tripId(), route.sourceCityId(), route.destCityId())))
+                            .build());
+                    Matcher bookingId = response != null ? BOOKING_ID.matcher(response) : null;
+                    if (bookingId != null && bookingId.find()) {
+                        send(HttpRequest.newBuilder(target.uri("/v1/payments"))
+                                .header("Content-Type", "application/json")
+                                .header("Authorization", "Bearer " + token)
+                                .header("Idempotency-Key", UUID.randomUUID().toString())
+                                .POST(HttpRequest.BodyPublishers.ofString(String.format(
+                                        "{\"bookingId\":\"%s\",\"method\":\"credit\"}", bookingId.group(1))))
+                                .build());
+                    }
+                } else {
+                    send(HttpRequest.newBuilder(target.uri(String.format(
+                                    "/v1/inventory/search?date=%s&sourceCityId=%s&destCityId=%s",
+                                    route.date(), route.sourceCityId(), route.destCityId())))
+                            .header("Authorization", "Bearer " + token)
+                            .GET()
+                            .build());
+                }
+                if (thinkMillis > 0) {
+                    try {
+                        Thread.sleep(thinkMillis);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+
+        // Returns the body of a 2xx response, otherwise null; only requests completed before the deadline count
+        private String send(HttpRequest request) {
+            long start = System.nanoTime();
+            try {
+                HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+                long end = System.nanoTime();
+                boolean ok = response.statusCode() / 100 == 2;
+                if (end <= deadline) {
+                    log.record(end - start, ok);
+                }
+                return ok ? response.body() : null;
+            } catch (IOException e) {
+                if (System.nanoTime() <= deadline) {
+                    log.record(System.nanoTime() - start, false);
+                }
+                return null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+    }
+
+    private record Target(String baseUrl, List<BenchmarkFixture.Route> routes, List<String> tokens) {
+
+        // Logs in a pool of generated users up front, so client start-up does not turn into a BCrypt storm
+        static Target of(ConfigurableApplicationContext app) {
+            int port = ((WebServerApplicationContext) app).getWebServer().getPort();
+            List<BenchmarkFixture.Route> routes = app.getBean(InventoryRepository.class).findAllTrips().stream()
+                    .sorted(Comparator.comparing(Trip::getTripId))
+                    .map(trip -> new BenchmarkFixture.Route(trip.getTripId(), trip.getSourceCityId(),
+                            trip.getDestCityId(), trip.getDate()))
+                    .toList();
+            AuthService authService = app.getBean(AuthService.class);
+            List<String> tokens = IntStream.range(0, TOKENS).parallel()
+                    .mapToObj(i -> authService.login("loadtest" + i + "@example.com", "loadtest"))
+                    .toList();
+            return new Target("http://localhost:" + port, routes, tokens);
+        }
+
+        URI uri(String path) {
+            return URI.create(baseUrl + path);
+        }
+    }
+
+    // Latencies of one client, appended without synchronization and merged once the run is over
+    private static final class LatencyLog {
+        private long[] nanos = new long[1024];
+        private int size;
+        private int errors;
+
+        void record(long latencyNanos, boolean ok) {
+            if (!ok) {
+                errors++;
+            }
+            if (size == nanos.length) {
+                nanos = Arrays.copyOf(nanos, size * 2);
+            }
+            nanos[size++] = latencyNanos;
+        }
+    }
+
+    private record Result(long[] sortedNanos, long errors, long elapsedNanos) {
+
+        // Throughput is over the measurement window; requests still running at its end are not counted
+        static Result of(LatencyLog[] logs, long elapsedNanos) {
+            long[] all = new long[Arrays.stream(logs).mapToInt(log -> log.size).sum()];
+            int offset = 0;
+            long errors = 0;
+            for (LatencyLog log : logs) {
+                System.arraycopy(log.nanos, 0, all, offset, log.size);
+                offset += log.size;
+                errors += log.errors;
+            }
+            Arrays.sort(all);
+            return new Result(all, errors, elapsedNanos);
+        }
+
+        long requests() {
+            return sortedNanos.length;
+        }
+
+        double throughput() {
+            return sortedNanos.length * 1e9 / elapsedNanos;
+        }
+
+        double percentileMillis(double percentile) {
+            if (sortedNanos.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.min(sortedNanos.length - 1, Math.ceil(percentile * sortedNanos.length) - 1);
+            return sortedNanos[Math.max(0, index)] / 1e6;
+        }
+    }
+}
@@ -1,35 +1,70 @@
 package com.redbus.config;
 
+import com.redbus.journal.JournalParticipant;
+import com.redbus.journal.MutationJournal;
+import com.redbus.journal.SnapshotManager;
 import com.redbus.model.*;
 import com.redbus.repository.*;
 import com.redbus.service.AuthService;
+import com.redbus.service.OrderService;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
 import java.util.List;
+import java.util.OptionalLong;
 
 @Component
+@Profile("!loadtest")
 @RequiredArgsConstructor
 @Slf4j
 public class DataSeeder implements CommandLineRunner {
     private final CityRepository cityRepository;
     private final BusRepository busRepository;
     private final InventoryRepository inventoryRepository;
+    private final UserRepository userRepository;
     private final AuthService authService;
+    private final OrderService orderService;
+    private final MutationJournal journal;
+    private final SnapshotManager snapshotManager;
+    private final List<JournalParticipant> journalParticipants;
 
     @Override
     public void run(String... args) throws Exception {
-        seedCities();
-        seedBuses();
-        seedTrips();
+        long start = System.nanoTime();
+        OptionalLong snapshot = snapshotManager.load();
+        if (snapshot.isEmpty()) {
+            seedCities();
+            seedBuses();
+        }
+        // Search rows resolve cities and buses, so the journal is replayed after those are in place
+        long records = replayJournal(snapshot.orElse(0));
+        if (snapshot.isPresent() || records > 0) {
+            orderService.rebuildSeatCounts();
+        }
+        snapshotManager.recoveryCompleted();
+        orderService.resumeReservationExpiry();
+
+        if (inventoryRepository.findAllTrips().isEmpty()) {
+            seedTrips();
+        }
         seedUsers();
-        log.info("Data seeding completed");
+        log.info("Data seeding completed in {} ms", (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private long replayJournal(long fromSegment) throws Exception {
+        long start = System.nanoTime();
+        long records = journal.replay(journalParticipants, fromSegment);
+        if (records > 0) {
+            log.info("Replayed {} journal records in {} ms", records, (System.nanoTime() - start) / 1_000_000);
+        }
+        return records;
     }
 
     private void seedCities() {
@@ -145,7 +180,13 @@ public class DataSeeder implements CommandLineRunner {
     }
 
     private void seedUsers() {
-        authService.signup("user1@example.com", "password1");
-        authService.signup("user2@example.com", "password2");
+        seedUser("user1@example.com", "password1");
+        seedUser("user2@example.com", "password2");
+    }
+
+    private void seedUser(String email, String password) {
+        if (userRepository.findByEmail(email).isEmpty()) {
+            authService.signup(email, password);
+        }
     }
 }
@@ -0,0 +1,256 @@
+package com.redbus.config;
+
+import com.redbus.model.*;
+import com.redbus.repository.*;
+import com.redbus.service.OrderService;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * Synthetic data at production-like cardinalities for profiling, used instead of {@link DataSeeder} in the
+ * {@code loadtest} profile. Every trip and its bookings are drawn from a random seeded by (seed, day, trip), so the
+ * same settings always produce the same data even though days are generated in parallel.
+ */
+@Component
+@Profile("loadtest")
+@Slf4j
+public class LoadTestDataGenerator implements CommandLineRunner {
+
+    private static final String USER_PASSWORD = "loadtest";
+    private static final int MAX_SEATS_PER_BOOKING = 4;
+
+    private final CityRepository cityRepository;
+    private final BusRepository busRepository;
+    private final InventoryRepository inventoryRepository;
+    private final BookingRepository bookingRepository;
+    private final UserRepository userRepository;
+    private final OrderService orderService;
+
+    private final long seed;
+    private final int cityCount;
+    private final int busCount;
+    private final int userCount;
+    private final int days;
+    private final int tripsPerDay;
+    private final int stopsPerTrip;
+    private final double bookingDensity;
+    private final double reservedShare;
+
+    public LoadTestDataGenerator(CityRepository cityRepository,
+                                 BusRepository busRepository,
+                                 InventoryRepository inventoryRepository,
+                                 BookingRepository bookingRepository,
+                                 UserRepository userRepository,
+                                 OrderService orderService,
+                                 @Value("${redbus.loadtest.seed:42}") long seed,
+                                 @Value("${redbus.loadtest.cities:100}") int cityCount,
+                                 @Value("${redbus.loadtest.buses:500}") int busCount,
+                                 @Value("${redbus.loadtest.users:10000}") int userCount,
+                                 @Value("${redbus.loadtest.days:7}") int days,
+                                 @Value("${redbus.loadtest.trips-per-day:1000}") int tripsPerDay,
+                                 @Value("${redbus.loadtest.stops-per-trip:3}") int stopsPerTrip,
+                                 @Value("${redbus.loadtest.booking-density:0.3}") double bookingDensity,
+                                 @Value("${redbus.loadtest.reserved-share:0.1}") double reservedShare) {
+        if (stopsPerTrip + 2 > cityCount) {
+            throw new IllegalArgumentException("redbus.loadtest.cities must exceed stops-per-trip + 1");
+        }
+        if (busCount < 1 || userCount < 1) {
+            throw new IllegalArgumentException("redbus.loadtest.buses and users must be at least 1");
+        }
+        this.cityRepository = cityRepository;
+        this.busRepository = busRepository;
+        this.inventoryRepository = inventoryRepository;
+        this.bookingRepository = bookingRepository;
+        this.userRepository = userRepository;
+        this.orderService = orderService;
+        this.seed = seed;
+        this.cityCount = cityCount;
+        this.busCount = busCount;
+        this.userCount = userCount;
+        this.days = days;
+        this.tripsPerDay = tripsPerDay;
+        this.stopsPerTrip = stopsPerTrip;
+        this.bookingDensity = bookingDensity;
+        this.reservedShare = reservedShare;
+    }
+
+    @Override
+    public void run(String... args) {
+        long start = System.nanoTime();
+        generateCities();
+        generateBuses();
+        generateUsers();
+
+        LocalDate firstDay = LocalDate.now().plusDays(1);
+        AtomicLong parts = new AtomicLong();
+        AtomicLong bookings = new AtomicLong();
+        IntStream.range(0, days).parallel().forEach(day -> {
+            List<ScheduledTrip> batch = generateDay(firstDay.plusDays(day), day);
+            inventoryRepository.upsertBatch(batch);
+            batch.forEach(scheduled -> parts.addAndGet(scheduled.parts().size()));
+            bookings.addAndGet(generateBookings(batch, day));
+        });
+        orderService.resumeReservationExpiry();
+
+        log.info("Generated {} cities, {} buses, {} users, {} trips ({} parts) and {} bookings in {} ms (seed {})",
+                cityCount, busCount, userCount, (long) days * tripsPerDay, parts.get(), bookings.get(),
+                (System.nanoTime() - start) / 1_000_000, seed);
+    }
+
+    private void generateCities() {
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < cityCount; i++) {
+            cityRepository.save(City.builder()
+                    .cityId(cityId(i))
+                    .name("City " + (i + 1))
+                    .latitude(8 + random.nextDouble() * 27)   // roughly the extent of India
+                    .longitude(68 + random.nextDouble() * 29)
+                    .build());
+        }
+    }
+
+    private void generateBuses() {
+        for (int i = 0; i < busCount; i++) {
+            busRepository.save(Bus.builder()
+                    .busId(busId(i))
+                    .ownerId(String.format("LTOWNER%05d", i % 100))
+                    .operator("Operator " + (i % 50 + 1))
+                    .parkingAddress(cityId(i % cityCount) + " Depot")
+                    .build());
+        }
+    }
+
+    // One BCrypt hash shared by every user; hashing per user would dominate generation time
+    private void generateUsers() {
+        String passwordHash = new BCryptPasswordEncoder().encode(USER_PASSWORD);
+        LocalDateTime createdAt = LocalDateTime.now();
+        for (int i = 0; i < userCount; i++) {
+            userRepository.save(User.builder()
+                    .userId(userId(i))
+                    .email("loadtest" + i + "@example.com")
+                    .passwordHash(passwordHash)
+                    .createdAt(createdAt)
+                    .build());
+        }
+    }
+
+    private List<ScheduledTrip> generateDay(LocalDate date, int day) {
+        PricingType[] pricingTypes = PricingType.values();
+        String dateStr = date.toString();
+        List<ScheduledTrip> batch = new ArrayList<>(tripsPerDay);
+        for (int i = 0; i < tripsPerDay; i++) {
+            SplittableRandom random = new SplittableRandom(mix(seed, day, i, 0));
+            String tripId = String.format("LT%03d-%06d", day, i);
+            int capacity = 30 + random.nextInt(31);
+
+            // Distinct cities along the route: source, stops, destination
+            int[] route = random.ints(0, cityCount).distinct().limit(stopsPerTrip + 2).toArray();
+            Trip trip = Trip.builder()
+                    .tripId(tripId)
+                    .busId(busId(random.nextInt(busCount)))
+                    .date(dateStr)
+                    .sourceCityId(cityId(route[0]))
+                    .destCityId(cityId(route[route.length - 1]))
+                    .capacity(capacity)
+                    .pricingType(pricingTypes[random.nextInt(pricingTypes.length)])
+                    .build();
+
+            // Departures on the 5-minute grid, legs of 30 minutes to 4 hours; times wrap past midnight
+            LocalTime time = LocalTime.of(0, 0).plusMinutes(5L * random.nextInt(288));
+            List<TripPart> parts = new ArrayList<>(route.length - 1);
+            for (int p = 0; p < route.length - 1; p++) {
+                LocalTime arrival = time.plusMinutes(30 + 5L * random.nextInt(43));
+                parts.add(TripPart.builder()
+                        .tripPartId(tripId + "_" + (p + 1))
+                        .tripId(tripId)
+                        .date(dateStr)
+                        .sourceCityId(cityId(route[p]))
+                        .destCityId(cityId(route[p + 1]))
+                        .sourceTime(time.toString())
+                        .destTime(arrival.toString())
+                        .sequence(p + 1)
+                        .capacity(capacity)
+                        .availableSeats(capacity)
+                        .build());
+                time = arrival.plusMinutes(5L * random.nextInt(4));
+            }
+            batch.add(new ScheduledTrip(trip, parts));
+        }
+        return batch;
+    }
+
+    // Books roughly bookingDensity of each trip's seat-segments, over random sub-routes, reserving the seats so
+    // counters and bookings agree. A share of bookings stays RESERVED with holds expiring over the next 5 minutes.
+    private long generateBookings(List<ScheduledTrip> batch, int day) {
+        LocalDateTime now = LocalDateTime.now();
+        long created = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            ScheduledTrip scheduled = batch.get(i);
+            List<TripPart> parts = scheduled.parts();
+            SplittableRandom random = new SplittableRandom(mix(seed, day, i, 1));
+            long target = Math.round(scheduled.trip().getCapacity() * parts.size() * bookingDensity);
+
+            long booked = 0;
+            int attempt = 0;
+            while (booked < target) {
+                int from = random.nextInt(parts.size());
+                int to = from + random.nextInt(parts.size() - from);
+                int seats = 1 + random.nextInt(MAX_SEATS_PER_BOOKING);
+                List<String> tripPartIds = parts.subList(from, to + 1).stream().map(TripPart::getTripPartId).toList();
+                if (!inventoryRepository.reserveSeats(tripPartIds, seats)) {
+                    break;
+                }
+                boolean reserved = random.nextDouble() < reservedShare;
+                bookingRepository.save(Booking.builder()
+                        .bookingId(String.format("%s-B%04d", scheduled.trip().getTripId(), attempt++))
+                        .userId(userId(random.nextInt(userCount)))
+                        .tripId(scheduled.trip().getTripId())
+                        .sourceCityId(parts.get(from).getSourceCityId())
+                        .destCityId(parts.get(to).getDestCityId())
+                        .seats(seats)
+                        .status(reserved ? BookingStatus.RESERVED : BookingStatus.CONFIRMED)
+                        .createdAt(now)
+                        .expiresAt(reserved ? now.plusSeconds(1 + random.nextInt(300)) : now.plusMinutes(5))
+                        .pricePaise((long) seats * (to - from + 1) * (20_000 + random.nextInt(80_000)))
+                        .build());
+                booked += (long) seats * (to - from + 1);
+                created++;
+            }
+        }
+        return created;
+    }
+
+    private static long mix(long seed, int day, int trip, int stream) {
+        long h = seed;
+        h = h * 0x9E3779B97F4A7C15L + day;
+        h = h * 0x9E3779B97F4A7C15L + trip;
+        h = h * 0x9E3779B97F4A7C15L + stream;
+        return h ^ (h >>> 31);
+    }
+
+    private static String cityId(int index) {
+        return String.format("C%04d", index);
+    }
+
+    private static String busId(int index) {
+        return String.format("LTBUS%05d", index);
+    }
+
+    private static String userId(int index) {
+        return String.format("LTUSER%07d", index);
+    }
+}
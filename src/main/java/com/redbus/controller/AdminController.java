@@ -1,18 +1,22 @@
 package com.redbus.controller;
 
+import com.redbus.dto.BulkCreateTripsRequest;
 import com.redbus.dto.CreateTripRequest;
+import com.redbus.dto.ImportReport;
 import com.redbus.dto.TripView;
 import com.redbus.model.Trip;
 import com.redbus.model.PricingType;
 import com.redbus.repository.BusRepository;
 import com.redbus.repository.CityRepository;
 import com.redbus.service.AdminService;
+import com.redbus.service.TimetableImportService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
 import jakarta.validation.Valid;
 import java.util.HashMap;
@@ -26,6 +30,7 @@ import java.util.Map;
 public class AdminController {
     
     private final AdminService adminService;
+    private final TimetableImportService timetableImportService;
     private final CityRepository cityRepository;
     private final BusRepository busRepository;
     
@@ -67,6 +72,70 @@ public class AdminController {
         }
     }
     
+    @PostMapping("/bulk-create-trips")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> bulkCreateTrips(@Valid @RequestBody BulkCreateTripsRequest request) {
+        try {
+            List<Trip> createdTrips = adminService.bulkCreateTrips(request.getTrips());
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", "Successfully created " + createdTrips.size() + " trip(s)");
+            response.put("tripCount", createdTrips.size());
+            return ResponseEntity.ok(response);
+            
+        } catch (Exception e) {
+            log.error("Error bulk creating trips: {}", e.getMessage(), e);
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "Failed to create trips: " + e.getMessage());
+            
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+    
+    // Timetable upload, streamed row by row from the request body
+    @PostMapping("/import-timetable")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> importTimetable(@RequestParam("file") MultipartFile file) {
+        try {
+            ImportReport report = timetableImportService.importStream(file.getInputStream(), file.getOriginalFilename());
+            return ResponseEntity.ok(importResponse(report));
+        } catch (Exception e) {
+            return importFailure(e);
+        }
+    }
+    
+    // Timetable already on the server, read from the import directory
+    @PostMapping("/import-timetable/file")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> importTimetableFile(@RequestParam("name") String name) {
+        try {
+            return ResponseEntity.ok(importResponse(timetableImportService.importFile(name)));
+        } catch (Exception e) {
+            return importFailure(e);
+        }
+    }
+    
+    private Map<String, Object> importResponse(ImportReport report) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("message", "Imported " + report.getTripsImported() + " trip(s), rejected " + report.getTripsRejected());
+        response.put("report", report);
+        return response;
+    }
+    
+    private ResponseEntity<Map<String, Object>> importFailure(Exception e) {
+        log.error("Error importing timetable: {}", e.getMessage(), e);
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("message", "Failed to import timetable: " + e.getMessage());
+        
+        return ResponseEntity.badRequest().body(response);
+    }
+    
     @GetMapping("/trips")
     public String tripsPage(Model model) {
         List<TripView> trips = adminService.getAllTripsForDisplay();
@@ -4,8 +4,10 @@ import com.redbus.dto.AuthResponse;
 import com.redbus.dto.LoginRequest;
 import com.redbus.dto.SignupRequest;
 import com.redbus.service.AuthService;
+import com.redbus.service.PasswordHasher;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -17,13 +19,26 @@ public class AuthController {
 
     @PostMapping("/signup")
     public ResponseEntity<AuthResponse> signup(@Valid @RequestBody SignupRequest request) {
-        String token = authService.signup(request.getEmail(), request.getPassword());
-        return ResponseEntity.ok(new AuthResponse(token));
+        try {
+            String token = authService.signup(request.getEmail(), request.getPassword());
+            return ResponseEntity.ok(new AuthResponse(token));
+        } catch (PasswordHasher.BusyException e) {
+            return hashingBusy();
+        }
     }
 
     @PostMapping("/login")
     public ResponseEntity<AuthResponse> login(@Valid @RequestBody LoginRequest request) {
-        String token = authService.login(request.getEmail(), request.getPassword());
-        return ResponseEntity.ok(new AuthResponse(token));
+        try {
+            String token = authService.login(request.getEmail(), request.getPassword());
+            return ResponseEntity.ok(new AuthResponse(token));
+        } catch (PasswordHasher.BusyException e) {
+            return hashingBusy();
+        }
+    }
+
+    // Shed the request rather than queue it behind a login storm
+    private ResponseEntity<AuthResponse> hashingBusy() {
+        return ResponseEntity.status(503).header(HttpHeaders.RETRY_AFTER, "1").build();
     }
 }
@@ -1,5 +1,6 @@
 package com.redbus.controller;
 
+import com.redbus.dto.BookingPage;
 import com.redbus.dto.BookingResponse;
 import com.redbus.dto.CreateBookingRequest;
 import com.redbus.dto.BookingView;
@@ -17,13 +18,14 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.time.LocalDateTime;
 import java.util.List;
 
 @RestController
 @RequestMapping("/v1/bookings")
 @RequiredArgsConstructor
 public class BookingController {
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final OrderService orderService;
     private final AuthService authService;
     private final InventoryService inventoryService;
@@ -40,18 +42,20 @@ public class BookingController {
             HttpServletRequest httpRequest) {
         
         String userId = authService.extractUserId(authHeader);
-        
-        // Create idempotency key
-        String idempotencyKeyFull = idempotencyKey + "_" + userId + "_" + 
-                (request.getTripId() + "_" + request.getSourceCityId() + "_" + request.getDestCityId() + "_" + request.getSeats()).hashCode();
-        
-        // Check for existing result
-        Object existingResult = idempotencyStore.getResult(idempotencyKeyFull);
-        if (existingResult != null) {
-            BookingResponse response = (BookingResponse) existingResult;
+
+        // A retry with the same key gets the first response, even while the first request is still running
+        List<Object> payload = List.of(request.getTripId(), request.getSourceCityId(), request.getDestCityId(),
+                request.getSeats());
+        try {
+            BookingResponse response = idempotencyStore.execute("create-booking", userId, idempotencyKey, payload,
+                    () -> book(userId, request));
             return ResponseEntity.ok(response);
+        } catch (IdempotencyStore.KeyReuseException e) {
+            return ResponseEntity.status(409).build();
         }
-        
+    }
+
+    private BookingResponse book(String userId, CreateBookingRequest request) {
         // Create booking
         Booking booking = orderService.createBooking(userId, request.getTripId(), request.getSourceCityId(), request.getDestCityId(), request.getSeats());
         
@@ -67,12 +71,7 @@ public class BookingController {
             }
         }
         
-        BookingResponse response = new BookingResponse(booking.getBookingId(), booking.getStatus());
-        
-        // Store result for idempotency (expires in 24 hours)
-        idempotencyStore.storeResult(idempotencyKeyFull, response, LocalDateTime.now().plusHours(24));
-        
-        return ResponseEntity.ok(response);
+        return new BookingResponse(booking.getBookingId(), booking.getStatus());
     }
 
     @GetMapping("/all-bookings")
@@ -85,4 +84,22 @@ public class BookingController {
 
         return ResponseEntity.ok(allBookings);
     }
+
+    @GetMapping("/page")
+    public ResponseEntity<BookingPage> getBookingsPage(
+            @RequestHeader("Authorization") String authHeader,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String cursor) {
+
+        String userId = authService.extractUserId(authHeader);
+
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(orderService.getBookingsPage(userId, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
 }
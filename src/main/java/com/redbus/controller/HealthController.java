@@ -1,5 +1,7 @@
 package com.redbus.controller;
 
+import com.redbus.journal.MutationJournal;
+import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -9,10 +11,14 @@ import java.util.Map;
 
 @RestController
 @RequestMapping("/healthz")
+@RequiredArgsConstructor
 public class HealthController {
+    private final MutationJournal journal;
 
     @GetMapping
     public ResponseEntity<Map<String, Boolean>> health() {
-        return ResponseEntity.ok(Map.of("ok", true));
+        // Writes are no longer durable once the journal has stopped
+        boolean ok = journal.getFailure() == null;
+        return ResponseEntity.status(ok ? 200 : 503).body(Map.of("ok", ok));
     }
 }
@@ -1,17 +1,25 @@
 package com.redbus.controller;
 
+import com.redbus.dto.ItineraryResponseItem;
+import com.redbus.dto.RangeSearchResponse;
+import com.redbus.dto.SearchPage;
 import com.redbus.dto.SearchResponseItem;
+import com.redbus.model.SearchSort;
 import com.redbus.service.InventoryService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.util.List;
 
 @RestController
 @RequestMapping("/v1/inventory")
 @RequiredArgsConstructor
 public class InventoryController {
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final InventoryService inventoryService;
 
     @GetMapping("/search")
@@ -22,5 +30,63 @@ public class InventoryController {
 
         List<SearchResponseItem> response = inventoryService.search(sourceCityId, destCityId, date);
         return ResponseEntity.ok(response);
-    }  
+    }
+
+    @GetMapping("/search/page")
+    public ResponseEntity<SearchPage> searchTripsPage(
+            @RequestParam String date,
+            @RequestParam String sourceCityId,
+            @RequestParam String destCityId,
+            @RequestParam(defaultValue = "DEPARTURE") SearchSort sort,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String cursor) {
+
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(inventoryService.searchPage(sourceCityId, destCityId, date, sort, limit, cursor));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/search/connecting")
+    public ResponseEntity<List<ItineraryResponseItem>> searchConnectingTrips(
+            @RequestParam String date,
+            @RequestParam String sourceCityId,
+            @RequestParam String destCityId,
+            @RequestParam(defaultValue = "30") int minLayoverMinutes,
+            @RequestParam(defaultValue = "360") int maxLayoverMinutes) {
+
+        try {
+            return ResponseEntity.ok(inventoryService.searchConnecting(sourceCityId, destCityId, date,
+                    minLayoverMinutes, maxLayoverMinutes));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // Either an explicit window (date..toDate) or date ± flexDays
+    @GetMapping("/search/range")
+    public ResponseEntity<RangeSearchResponse> searchTripsInRange(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate toDate,
+            @RequestParam(defaultValue = "0") int flexDays,
+            @RequestParam String sourceCityId,
+            @RequestParam String destCityId) {
+
+        // Checked before the date arithmetic, which throws for far-out values; the window itself is checked by
+        // searchRange
+        if (flexDays < 0 || flexDays > InventoryService.MAX_RANGE_DAYS) {
+            return ResponseEntity.badRequest().build();
+        }
+        LocalDate fromDate = toDate != null ? date : date.minusDays(flexDays);
+        LocalDate untilDate = toDate != null ? toDate : date.plusDays(flexDays);
+        try {
+            return ResponseEntity.ok(inventoryService.searchRange(sourceCityId, destCityId, fromDate, untilDate));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
 }
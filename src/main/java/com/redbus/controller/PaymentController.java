@@ -10,16 +10,22 @@ import com.redbus.service.IdempotencyStore;
 import com.redbus.service.PaymentService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.time.LocalDateTime;
+import java.io.IOException;
+import java.util.List;
 import java.util.Optional;
 
 @RestController
 @RequestMapping("/v1/payments")
 @RequiredArgsConstructor
+@Slf4j
 public class PaymentController {
+    private static final long STATUS_EVENTS_TIMEOUT_MS = 30_000;
+
     private final PaymentService paymentService;
     private final AuthService authService;
     private final BookingRepository bookingRepository;
@@ -32,18 +38,18 @@ public class PaymentController {
             @RequestHeader("Idempotency-Key") String idempotencyKey) {
         
         String userId = authService.extractUserId(authHeader);
-        
-        // Create idempotency key
-        String idempotencyKeyFull = idempotencyKey + "_" + userId + "_" + 
-                (request.getBookingId() + "_" + request.getMethod()).hashCode();
-        
-        // Check for existing result
-        Object existingResult = idempotencyStore.getResult(idempotencyKeyFull);
-        if (existingResult != null) {
-            PaymentResponse response = (PaymentResponse) existingResult;
-            return ResponseEntity.ok(response);
+
+        // The whole response is kept for the key, refusals included, so a retry always sees the first answer
+        List<Object> payload = List.of(request.getBookingId(), String.valueOf(request.getMethod()));
+        try {
+            return idempotencyStore.execute("create-payment", userId, idempotencyKey, payload,
+                    () -> pay(userId, request));
+        } catch (IdempotencyStore.KeyReuseException e) {
+            return ResponseEntity.status(409).build();
         }
-        
+    }
+
+    private ResponseEntity<PaymentResponse> pay(String userId, CreatePaymentRequest request) {
         // Validate booking
         Optional<Booking> booking = bookingRepository.findById(request.getBookingId());
         if (booking.isEmpty()) {
@@ -59,18 +65,65 @@ public class PaymentController {
         }
         
         // Create payment
-        Payment payment = paymentService.initiatePayment(
-                request.getBookingId(),
-                userId,
-                booking.get().getPricePaise(),
-                request.getMethod()
-        );
-        
-        PaymentResponse response = new PaymentResponse(payment.getPaymentId(), payment.getStatus());
-        
-        // Store result for idempotency (expires in 24 hours)
-        idempotencyStore.storeResult(idempotencyKeyFull, response, LocalDateTime.now().plusHours(24));
+        Payment payment;
+        try {
+            payment = paymentService.initiatePayment(
+                    request.getBookingId(),
+                    userId,
+                    booking.get().getPricePaise(),
+                    request.getMethod()
+            );
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).build();
+        }
         
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok(new PaymentResponse(payment.getPaymentId(), payment.getStatus()));
+    }
+
+    // Payments complete in the background; poll here until the status is no longer INITIATED
+    @GetMapping("/{paymentId}")
+    public ResponseEntity<PaymentResponse> getPayment(
+            @PathVariable String paymentId,
+            @RequestHeader("Authorization") String authHeader) {
+
+        String userId = authService.extractUserId(authHeader);
+
+        Optional<Payment> payment = paymentService.getPayment(paymentId);
+        if (payment.isEmpty() || !payment.get().getUserId().equals(userId)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(new PaymentResponse(payment.get().getPaymentId(), payment.get().getStatus()));
+    }
+
+    // Server-sent events: one "status" event with the final payment status, then the stream ends
+    @GetMapping(path = "/{paymentId}/events", produces = "text/event-stream")
+    public ResponseEntity<SseEmitter> paymentEvents(
+            @PathVariable String paymentId,
+            @RequestHeader("Authorization") String authHeader) {
+
+        String userId = authService.extractUserId(authHeader);
+
+        Optional<Payment> payment = paymentService.getPayment(paymentId);
+        if (payment.isEmpty() || !payment.get().getUserId().equals(userId)) {
+            return ResponseEntity.notFound().build();
+        }
+
+        SseEmitter emitter = new SseEmitter(STATUS_EVENTS_TIMEOUT_MS);
+        paymentService.awaitCompletion(paymentId).whenComplete((completed, error) -> {
+            if (error != null) {
+                emitter.completeWithError(error);
+                return;
+            }
+            try {
+                emitter.send(SseEmitter.event()
+                        .name("status")
+                        .data(new PaymentResponse(completed.getPaymentId(), completed.getStatus())));
+                emitter.complete();
+            } catch (IOException | IllegalStateException e) {
+                // The client went away or the emitter timed out first
+                log.debug("Could not send status of payment {}: {}", paymentId, e.getMessage());
+            }
+        });
+        return ResponseEntity.ok(emitter);
     }
 }
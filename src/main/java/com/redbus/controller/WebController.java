@@ -2,11 +2,13 @@ package com.redbus.controller;
 
 import com.redbus.dto.SearchResponseItem;
 import com.redbus.model.Booking;
+import com.redbus.model.BookingStatus;
 import com.redbus.model.City;
 import com.redbus.model.TripPart;
 import com.redbus.service.AuthService;
 import com.redbus.service.InventoryService;
 import com.redbus.service.OrderService;
+import com.redbus.service.PasswordHasher;
 import com.redbus.service.PaymentService;
 import com.redbus.pricing.PricingService;
 import com.redbus.repository.CityRepository;
@@ -45,13 +47,14 @@ public class WebController {
                        @RequestParam String password,
                        HttpServletRequest request) {
         try {
-            System.out.println("Login request received for email: " + email);
             String token = authService.login(email, password);
 
             request.getSession().setAttribute("token", token);
             request.getSession().setAttribute("userId", authService.extractUserIdFromToken(token));
 
             return "redirect:/search";
+        } catch (PasswordHasher.BusyException e) {
+            return "redirect:/login?busy=true";
         } catch (Exception e) {
             return "redirect:/login?error=true";
         }
@@ -69,6 +72,8 @@ public class WebController {
         try {
             authService.signup(email, password);
             return "redirect:/login?success=true";
+        } catch (PasswordHasher.BusyException e) {
+            return "redirect:/signup?busy=true";
         } catch (Exception e) {
             return "redirect:/signup?error=true";
         }
@@ -223,8 +228,13 @@ public class WebController {
         if (booking.isEmpty()) {
             return "redirect:/search";
         }
+        // Payments are processed in the background: the page refreshes while the booking is still RESERVED
+        if (booking.get().getStatus() == BookingStatus.EXPIRED) {
+            return "redirect:/payment/" + bookingId + "?error=payment_failed";
+        }
 
         model.addAttribute("booking", booking.get());
+        model.addAttribute("processing", booking.get().getStatus() == BookingStatus.RESERVED);
         return "booking-success";
     }
 
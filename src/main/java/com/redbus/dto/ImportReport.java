@@ -0,0 +1,34 @@
+package com.redbus.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportReport {
+    private String source;
+    private long rowsRead;
+    private long tripsImported;
+    private long partsImported;
+    private long tripsRejected;
+    private long errorCount;
+    private List<RowError> errors; // first errors only, errorCount has the total
+    private long elapsedMillis;
+    private long rowsPerSecond;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RowError {
+        private long line;
+        private String tripId;
+        private String message;
+    }
+}
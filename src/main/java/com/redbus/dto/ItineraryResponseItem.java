@@ -0,0 +1,21 @@
+package com.redbus.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ItineraryResponseItem {
+    private List<SearchResponseItem> legs;
+    private String transferCityId;
+    private String transferCity;
+    private long layoverMinutes;
+    private long totalPricePaise;
+    private int availableSeats; // bottleneck across both legs
+}
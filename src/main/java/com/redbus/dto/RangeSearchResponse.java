@@ -0,0 +1,29 @@
+package com.redbus.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RangeSearchResponse {
+    private String fromDate;
+    private String toDate;
+    private List<SearchResponseItem> trips; // ordered by date, then departure time
+    private List<DateFare> cheapestFares;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class DateFare {
+        private String date;
+        private String tripId;     // null when no trip has seats on this date
+        private Long pricePaise;   // null when no trip has seats on this date
+    }
+}
@@ -0,0 +1,15 @@
+package com.redbus.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchPage {
+    private List<SearchResponseItem> items;
+    private String nextCursor; // null on the last page
+}
@@ -0,0 +1,192 @@
+package com.redbus.gateway;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queues charges and sends them to the {@link PaymentGateway} in batches, so a burst of payments costs one round
+ * trip per batch rather than one per payment. A flusher thread sends a batch once it holds {@code max-size}
+ * charges or its oldest charge has waited {@code max-linger}, whichever comes first. Up to {@code max-concurrent}
+ * batches are at the gateway at once; beyond that the queue absorbs the burst, and a full queue rejects charges.
+ */
+@Component
+@Slf4j
+public class BatchingPaymentClient {
+
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final PaymentGateway gateway;
+    private final AsyncTaskExecutor executor;
+    private final int maxBatchSize;
+    private final long maxLingerNanos;
+    private final BlockingQueue<PendingCharge> queue;
+    private final Semaphore batchSlots;
+
+    private final DistributionSummary batchSize;
+    private final Timer linger;
+    private final Timer roundTrip;
+
+    private volatile Thread flusher;
+
+    public BatchingPaymentClient(PaymentGateway gateway,
+                                 @Qualifier("applicationTaskExecutor") AsyncTaskExecutor executor,
+                                 @Value("${redbus.gateway.batch.max-size:100}") int maxBatchSize,
+                                 @Value("${redbus.gateway.batch.max-linger:20ms}") Duration maxLinger,
+                                 @Value("${redbus.gateway.batch.max-concurrent:4}") int maxConcurrentBatches,
+                                 @Value("${redbus.gateway.queue-capacity:100000}") int queueCapacity,
+                                 MeterRegistry meterRegistry) {
+        this.gateway = gateway;
+        this.executor = executor;
+        this.maxBatchSize = maxBatchSize;
+        this.maxLingerNanos = maxLinger.toNanos();
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSlots = new Semaphore(maxConcurrentBatches);
+
+        this.batchSize = DistributionSummary.builder("redbus.gateway.batch.size")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.linger = Timer.builder("redbus.gateway.batch.linger")
+                .description("Time the oldest charge of a batch waited before the batch was sent")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.roundTrip = Timer.builder("redbus.gateway.batch.round-trip").register(meterRegistry);
+        Gauge.builder("redbus.gateway.queue.depth", queue, BlockingQueue::size).register(meterRegistry);
+        Gauge.builder("redbus.gateway.batches.in-flight", batchSlots,
+                slots -> maxConcurrentBatches - slots.availablePermits()).register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        Thread thread = new Thread(this::run, "payment-batcher");
+        thread.setDaemon(true);
+        flusher = thread;
+        thread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        Thread current = flusher;
+        if (current != null) {
+            flusher = null;
+            current.interrupt();
+            current.join();
+        }
+        List<PendingCharge> abandoned = new ArrayList<>();
+        queue.drainTo(abandoned);
+        abandoned.forEach(pending -> pending.result().completeExceptionally(
+                new IllegalStateException("Payment gateway client is shutting down")));
+    }
+
+    /**
+     * Queues the charge for the next batch. The future completes once the gateway has answered for its batch, or
+     * fails straight away with {@link RejectedExecutionException} when the queue is full.
+     */
+    public CompletableFuture<ChargeResult> submit(ChargeRequest request) {
+        PendingCharge pending = new PendingCharge(request, System.nanoTime(), new CompletableFuture<>());
+        if (!queue.offer(pending)) {
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Payment gateway queue is full"));
+        }
+        return pending.result();
+    }
+
+    private void run() {
+        List<PendingCharge> batch = new ArrayList<>(maxBatchSize);
+        while (flusher != null) {
+            try {
+                PendingCharge first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                fill(batch, first.queuedNanos() + maxLingerNanos);
+                // Waiting for a free slot here is the backpressure: charges keep queueing meanwhile and the next
+                // batch goes out fuller
+                batchSlots.acquire();
+            } catch (InterruptedException e) {
+                // Stopping: what was taken from the queue is failed like what is still in it
+                batch.forEach(pending -> pending.result().completeExceptionally(
+                        new IllegalStateException("Payment gateway client is shutting down")));
+                return;
+            }
+            dispatch(List.copyOf(batch));
+            batch.clear();
+        }
+    }
+
+    // Adds queued charges to the batch until it is full or the flush deadline passes
+    private void fill(List<PendingCharge> batch, long flushAtNanos) throws InterruptedException {
+        while (batch.size() < maxBatchSize) {
+            queue.drainTo(batch, maxBatchSize - batch.size());
+            long waitNanos = flushAtNanos - System.nanoTime();
+            if (batch.size() == maxBatchSize || waitNanos <= 0) {
+                return;
+            }
+            PendingCharge next = queue.poll(waitNanos, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void dispatch(List<PendingCharge> batch) {
+        long sentNanos = System.nanoTime();
+        batchSize.record(batch.size());
+        linger.record(sentNanos - batch.get(0).queuedNanos(), TimeUnit.NANOSECONDS);
+        try {
+            executor.execute(() -> send(batch, sentNanos));
+        } catch (RuntimeException e) {
+            batchSlots.release();
+            batch.forEach(pending -> pending.result().completeExceptionally(e));
+        }
+    }
+
+    // Fans the gateway's answers back out to the charges of the batch
+    private void send(List<PendingCharge> batch, long sentNanos) {
+        try {
+            List<ChargeResult> results = gateway.charge(batch.stream().map(PendingCharge::request).toList());
+            roundTrip.record(System.nanoTime() - sentNanos, TimeUnit.NANOSECONDS);
+
+            Map<String, ChargeResult> byPaymentId = new HashMap<>(results.size() * 2);
+            results.forEach(result -> byPaymentId.put(result.paymentId(), result));
+            for (PendingCharge pending : batch) {
+                ChargeResult result = byPaymentId.get(pending.request().paymentId());
+                if (result != null) {
+                    pending.result().complete(result);
+                } else {
+                    pending.result().completeExceptionally(
+                            new IllegalStateException("No gateway result for payment " + pending.request().paymentId()));
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Payment gateway batch of {} charges failed", batch.size(), e);
+            batch.forEach(pending -> pending.result().completeExceptionally(e));
+        } finally {
+            batchSlots.release();
+        }
+    }
+
+    private record PendingCharge(ChargeRequest request, long queuedNanos, CompletableFuture<ChargeResult> result) {
+    }
+}
@@ -0,0 +1,4 @@
+package com.redbus.gateway;
+
+public record ChargeRequest(String paymentId, String bookingId, long amountPaise, String method) {
+}
@@ -0,0 +1,12 @@
+package com.redbus.gateway;
+
+public record ChargeResult(String paymentId, boolean approved, String declineReason) {
+
+    public static ChargeResult approved(String paymentId) {
+        return new ChargeResult(paymentId, true, null);
+    }
+
+    public static ChargeResult declined(String paymentId, String reason) {
+        return new ChargeResult(paymentId, false, reason);
+    }
+}
@@ -0,0 +1,44 @@
+package com.redbus.gateway;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Local stand-in for the payment gateway: every batch costs one fixed round trip, whatever its size, and each
+ * charge is approved with a fixed probability.
+ */
+@Component
+public class MockPaymentGateway implements PaymentGateway {
+
+    private final Duration roundTrip;
+    private final double approvalRate;
+
+    public MockPaymentGateway(@Value("${redbus.gateway.round-trip:100ms}") Duration roundTrip,
+                              @Value("${redbus.gateway.approval-rate:0.9}") double approvalRate) {
+        this.roundTrip = roundTrip;
+        this.approvalRate = approvalRate;
+    }
+
+    @Override
+    public List<ChargeResult> charge(List<ChargeRequest> requests) {
+        try {
+            Thread.sleep(roundTrip);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while calling the payment gateway", e);
+        }
+
+        List<ChargeResult> results = new ArrayList<>(requests.size());
+        for (ChargeRequest request : requests) {
+            results.add(ThreadLocalRandom.current().nextDouble() < approvalRate
+                    ? ChargeResult.approved(request.paymentId())
+                    : ChargeResult.declined(request.paymentId(), "Declined by issuer"));
+        }
+        return results;
+    }
+}
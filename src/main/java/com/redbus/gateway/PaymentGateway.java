@@ -0,0 +1,14 @@
+package com.redbus.gateway;
+
+import java.util.List;
+
+/**
+ * A payment gateway that takes charges in batches: one round trip authorizes every charge in the batch.
+ */
+public interface PaymentGateway {
+
+    /**
+     * Charges every request and returns one result per request, in the same order.
+     */
+    List<ChargeResult> charge(List<ChargeRequest> requests);
+}
@@ -0,0 +1,7 @@
+package com.redbus.journal;
+
+public enum FsyncPolicy {
+    ALWAYS,   // force every group commit to disk
+    INTERVAL, // force at most once per configured interval
+    NEVER     // leave flushing to the OS
+}
@@ -0,0 +1,30 @@
+package com.redbus.journal;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Reports the journal down once a write has failed: mutations are no longer durable from then on.
+ */
+@Component
+@RequiredArgsConstructor
+public class JournalHealthIndicator implements HealthIndicator {
+
+    private final MutationJournal journal;
+
+    @Override
+    public Health health() {
+        if (!journal.isEnabled()) {
+            return Health.up().withDetail("enabled", false).build();
+        }
+        IOException failure = journal.getFailure();
+        if (failure != null) {
+            return Health.down(failure).build();
+        }
+        return Health.up().build();
+    }
+}
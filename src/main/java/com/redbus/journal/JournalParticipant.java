@@ -0,0 +1,13 @@
+package com.redbus.journal;
+
+import java.util.Set;
+
+/**
+ * A store that writes its mutations to the {@link MutationJournal} and knows how to re-apply them on startup.
+ * Replayed records must be applied without being journaled again.
+ */
+public interface JournalParticipant {
+    Set<JournalRecordType> journalRecordTypes();
+
+    void replay(JournalRecordType type, byte[] payload, MutationJournal journal);
+}
@@ -0,0 +1,14 @@
+package com.redbus.journal;
+
+public enum JournalRecordType {
+    TRIP_UPSERT,
+    PARTS_UPSERT,
+    SEATS_RESERVED,
+    SEATS_RELEASED,
+    BOOKING_SAVE,
+    BOOKING_STATUS,
+    PAYMENT_SAVE,
+    PAYMENT_STATUS,
+    USER_SAVE,
+    TRIPS_BATCH_UPSERT
+}
@@ -0,0 +1,415 @@
+package com.redbus.journal;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of repository mutations. Callers serialize a record and hand it to a queue; a single
+ * writer thread drains the queue in batches (group commit), writes them to the current segment file through a
+ * {@link FileChannel} and forces them to disk according to the {@link FsyncPolicy}. No caller ever waits on disk.
+ *
+ * <p>Each run writes to fresh segments; on startup the segments of earlier runs are replayed in order, starting
+ * from the segment recorded by the last snapshot.
+ * A frame is {@code [int payloadLength][int crc32][byte type][payload]}, and a torn or corrupt frame ends
+ * the replay of its segment.
+ *
+ * <p>A failed write stops the journal for good rather than leaving a gap that replay would apply later records
+ * over: from then on {@link #append} throws, and health reports the journal down until the application restarts.
+ */
+@Component
+@Slf4j
+public class MutationJournal {
+
+    private static final int FRAME_HEADER_BYTES = 9;
+    private static final int MAX_BATCH = 4096;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final boolean enabled;
+    private final Path directory;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalNanos;
+    private final long segmentBytes;
+    private final ObjectMapper objectMapper;
+    private final BlockingQueue<Frame> queue;
+
+    private Thread writer;
+    private volatile boolean running;
+    private volatile IOException failure;
+
+    // Writer thread state
+    private FileChannel channel;
+    private long segmentIndex;
+    private long segmentWritten;
+    private long lastSyncNanos;
+    private boolean dirty;
+
+    // First segment written by this run; replay only reads segments before it
+    private long firstSegmentOfRun;
+
+    public MutationJournal(@Value("${redbus.journal.enabled:false}") boolean enabled,
+                           @Value("${redbus.journal.dir:data/journal}") Path directory,
+                           @Value("${redbus.journal.fsync:INTERVAL}") FsyncPolicy fsyncPolicy,
+                           @Value("${redbus.journal.fsync-interval:50ms}") Duration fsyncInterval,
+                           @Value("${redbus.journal.segment-size:64MB}") DataSize segmentSize,
+                           @Value("${redbus.journal.queue-capacity:65536}") int queueCapacity,
+                           ObjectMapper objectMapper) {
+        this.enabled = enabled;
+        this.directory = directory;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalNanos = fsyncInterval.toNanos();
+        this.segmentBytes = segmentSize.toBytes();
+        this.objectMapper = objectMapper;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(directory);
+        firstSegmentOfRun = segmentsBefore(Long.MAX_VALUE).stream()
+                .mapToLong(MutationJournal::segmentIndexOf)
+                .max()
+                .orElse(0) + 1;
+        segmentIndex = firstSegmentOfRun;
+        channel = openSegment(segmentIndex);
+        lastSyncNanos = System.nanoTime();
+
+        running = true;
+        writer = new Thread(this::writeLoop, "journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("Journal writing to {} (fsync {})", directory.toAbsolutePath(), fsyncPolicy);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException, InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        writer.join();
+        if (failure == null) {
+            channel.force(false);
+        }
+        channel.close();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // The write error that stopped the journal, or null while it is healthy
+    public IOException getFailure() {
+        return failure;
+    }
+
+    /**
+     * Serializes the payload now, so later changes to a mutable object are not captured, and queues it for the
+     * writer. Only blocks if the queue is full.
+     */
+    public void append(JournalRecordType type, Object payload) {
+        if (!enabled) {
+            return;
+        }
+        checkNotFailed();
+        byte[] bytes;
+        try {
+            bytes = objectMapper.writeValueAsBytes(payload);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot serialize journal record " + type, e);
+        }
+        try {
+            queue.put(new Frame(type, bytes, null));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while journaling " + type, e);
+        }
+    }
+
+    /**
+     * Closes the current segment once everything appended so far is written, and returns the index of the new
+     * segment: every record appended after this call lands in that segment or a later one.
+     */
+    public long startNewSegment() {
+        if (!enabled) {
+            return 0;
+        }
+        checkNotFailed();
+        CompletableFuture<Long> rolled = new CompletableFuture<>();
+        try {
+            queue.put(new Frame(null, null, rolled));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while rolling the journal", e);
+        }
+        return rolled.join();
+    }
+
+    /**
+     * Throws once a write has failed. Repositories call it before changing anything, so a mutation that could not
+     * be journaled is refused rather than applied in memory only.
+     */
+    public void checkNotFailed() {
+        IOException cause = failure;
+        if (cause != null) {
+            throw new IllegalStateException("Journal stopped after a failed write", cause);
+        }
+    }
+
+    // Deletes segments before the given index, once a snapshot covers them
+    public int deleteSegmentsBefore(long index) throws IOException {
+        if (!enabled) {
+            return 0;
+        }
+        int deleted = 0;
+        for (Path segment : segmentsBefore(index)) {
+            Files.deleteIfExists(segment);
+            deleted++;
+        }
+        return deleted;
+    }
+
+    public <T> T decode(byte[] payload, Class<T> type) {
+        try {
+            return objectMapper.readValue(payload, type);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Replays every segment written by previous runs from {@code fromSegment} on, in order, handing each record to
+     * the participant that owns its type. Returns the number of records replayed.
+     */
+    public long replay(Collection<? extends JournalParticipant> participants, long fromSegment) throws IOException {
+        if (!enabled) {
+            return 0;
+        }
+        Map<JournalRecordType, JournalParticipant> owners = new EnumMap<>(JournalRecordType.class);
+        for (JournalParticipant participant : participants) {
+            participant.journalRecordTypes().forEach(type -> owners.put(type, participant));
+        }
+
+        long replayed = 0;
+        for (Path segment : segmentsBefore(firstSegmentOfRun)) {
+            if (segmentIndexOf(segment) >= fromSegment) {
+                replayed += replaySegment(segment, owners);
+            }
+        }
+        return replayed;
+    }
+
+    private long replaySegment(Path segment, Map<JournalRecordType, JournalParticipant> owners) throws IOException {
+        JournalRecordType[] types = JournalRecordType.values();
+        long replayed = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment), 1 << 16))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                byte[] payload;
+                int checksum;
+                int typeOrdinal;
+                try {
+                    checksum = in.readInt();
+                    typeOrdinal = in.readUnsignedByte();
+                    payload = new byte[length];
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    log.warn("Journal segment {} ends with a torn record, ignoring it", segment.getFileName());
+                    break;
+                }
+                if (typeOrdinal >= types.length || checksum != checksum(typeOrdinal, payload)) {
+                    log.warn("Journal segment {} has a corrupt record after {} records, skipping the rest",
+                            segment.getFileName(), replayed);
+                    break;
+                }
+
+                JournalParticipant owner = owners.get(types[typeOrdinal]);
+                if (owner != null) {
+                    owner.replay(types[typeOrdinal], payload, this);
+                }
+                replayed++;
+            }
+        }
+        return replayed;
+    }
+
+    private void writeLoop() {
+        List<Frame> batch = new ArrayList<>(MAX_BATCH);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+        while (running || !queue.isEmpty()) {
+            try {
+                Frame first = queue.poll(10, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_BATCH - 1);
+                    writeBatch(batch, buffer);
+                    batch.clear();
+                }
+                if (fsyncPolicy == FsyncPolicy.INTERVAL && dirty
+                        && System.nanoTime() - lastSyncNanos >= fsyncIntervalNanos) {
+                    sync();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                log.error("Journal write failed, journal stopped", e);
+                failure = e;
+                discardAfterFailure(batch);
+                return;
+            }
+        }
+    }
+
+    // Nothing is written after a failure, since replay would apply it on top of the lost batch. The writer keeps
+    // draining the queue so appends racing the failure do not block on a full queue, and fails pending rolls.
+    private void discardAfterFailure(List<Frame> batch) {
+        while (true) {
+            batch.forEach(frame -> {
+                if (frame.rolled() != null) {
+                    frame.rolled().completeExceptionally(failure);
+                }
+            });
+            batch.clear();
+            if (!running && queue.isEmpty()) {
+                return;
+            }
+            try {
+                Frame next = queue.poll(10, TimeUnit.MILLISECONDS);
+                if (next != null) {
+                    batch.add(next);
+                    queue.drainTo(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void writeBatch(List<Frame> batch, ByteBuffer buffer) throws IOException {
+        for (Frame frame : batch) {
+            if (frame.rolled() != null) {
+                flush(buffer);
+                rollSegment();
+                frame.rolled().complete(segmentIndex);
+                continue;
+            }
+            int frameBytes = FRAME_HEADER_BYTES + frame.payload().length;
+            if (frameBytes > buffer.remaining()) {
+                flush(buffer);
+            }
+            ByteBuffer target = frameBytes > buffer.capacity() ? ByteBuffer.allocate(frameBytes) : buffer;
+            target.putInt(frame.payload().length)
+                    .putInt(checksum(frame.type().ordinal(), frame.payload()))
+                    .put((byte) frame.type().ordinal())
+                    .put(frame.payload());
+            if (target != buffer) {
+                flush(target);
+            }
+        }
+        flush(buffer);
+        dirty = true;
+
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            sync();
+        }
+        if (segmentWritten >= segmentBytes) {
+            rollSegment();
+        }
+    }
+
+    private void flush(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            segmentWritten += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void sync() throws IOException {
+        channel.force(false);
+        lastSyncNanos = System.nanoTime();
+        dirty = false;
+    }
+
+    private void rollSegment() throws IOException {
+        if (fsyncPolicy != FsyncPolicy.NEVER) {
+            sync();
+        }
+        channel.close();
+        channel = openSegment(++segmentIndex);
+    }
+
+    private FileChannel openSegment(long index) throws IOException {
+        segmentWritten = 0;
+        return FileChannel.open(directory.resolve(segmentName(index)),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private List<Path> segmentsBefore(long index) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .filter(path -> segmentIndexOf(path) < index)
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static String segmentName(long index) {
+        return String.format("%s%016d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX);
+    }
+
+    private static long segmentIndexOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static int checksum(int typeOrdinal, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(typeOrdinal);
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    // A frame either carries a record, or asks the writer to roll to a new segment
+    private record Frame(JournalRecordType type, byte[] payload, CompletableFuture<Long> rolled) {
+    }
+}
@@ -0,0 +1,48 @@
+package com.redbus.journal;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary reader for snapshot sections, the counterpart of {@link SnapshotOutput}.
+ */
+public class SnapshotInput extends DataInputStream {
+
+    private final List<String> symbols = new ArrayList<>();
+
+    public SnapshotInput(InputStream in) {
+        super(in);
+    }
+
+    public String readSymbol() throws IOException {
+        int index = readInt();
+        if (index < 0) {
+            return null;
+        }
+        if (index == symbols.size()) {
+            symbols.add(readUTF());
+        }
+        return symbols.get(index);
+    }
+
+    public String readNullableUTF() throws IOException {
+        return readBoolean() ? readUTF() : null;
+    }
+
+    public LocalDateTime readDateTime() throws IOException {
+        if (!readBoolean()) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(readLong(), readInt(), ZoneOffset.UTC);
+    }
+
+    public <E extends Enum<E>> E readEnum(E[] values) throws IOException {
+        int ordinal = readByte();
+        return ordinal >= 0 ? values[ordinal] : null;
+    }
+}
@@ -0,0 +1,181 @@
+package com.redbus.journal;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Writes all {@link SnapshotParticipant}s to one binary snapshot file in the background and restores them at boot.
+ *
+ * <p>Writing does not stop writers: the journal is first rolled to a new segment, then each participant copies its
+ * state while mutations keep flowing. The snapshot records that segment, so a restore replays the journal from there
+ * and older segments can be deleted. Records that land in the new segment before the copy finishes are replayed on
+ * top of the snapshot; upserts and status changes are idempotent, and seat counts are rebuilt from bookings after
+ * recovery rather than trusted from the snapshot.
+ *
+ * <p>File layout: {@code [int magic][int version][long journalSegment][int sections]}, then per section
+ * {@code [utf name][int length][bytes]}.
+ */
+@Component
+@Slf4j
+public class SnapshotManager {
+
+    private static final int MAGIC = 0x5242534E; // "RBSN"
+    private static final int VERSION = 1;
+    private static final String SNAPSHOT_FILE = "snapshot.bin";
+
+    private final boolean enabled;
+    private final Path snapshotFile;
+    private final MutationJournal journal;
+    private final List<SnapshotParticipant> participants;
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    // Snapshots are only written once the previous state has been restored, or they would overwrite it
+    private volatile boolean recovered;
+
+    public SnapshotManager(@Value("${redbus.snapshot.enabled:false}") boolean enabled,
+                           @Value("${redbus.journal.dir:data/journal}") Path directory,
+                           MutationJournal journal,
+                           List<SnapshotParticipant> participants) {
+        this.enabled = enabled;
+        this.snapshotFile = directory.resolve(SNAPSHOT_FILE);
+        this.journal = journal;
+        this.participants = participants;
+    }
+
+    /**
+     * Restores every participant from the snapshot file, phase by phase, with the sections of a phase restored in
+     * parallel. Returns the first journal segment to replay on top of it, or empty when there is no snapshot.
+     */
+    public OptionalLong load() throws IOException {
+        if (!enabled || !Files.exists(snapshotFile)) {
+            return OptionalLong.empty();
+        }
+        long start = System.nanoTime();
+        Map<String, byte[]> sections = new HashMap<>();
+        long journalSegment;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unsupported snapshot file " + snapshotFile);
+            }
+            journalSegment = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                sections.put(name, bytes);
+            }
+        }
+
+        Map<Integer, List<SnapshotParticipant>> phases = participants.stream()
+                .collect(Collectors.groupingBy(SnapshotParticipant::snapshotPhase, TreeMap::new, Collectors.toList()));
+        for (List<SnapshotParticipant> phase : phases.values()) {
+            phase.parallelStream().forEach(participant -> {
+                byte[] bytes = sections.get(participant.snapshotSection());
+                if (bytes == null) {
+                    return;
+                }
+                long sectionStart = System.nanoTime();
+                try (SnapshotInput in = new SnapshotInput(new ByteArrayInputStream(bytes))) {
+                    participant.readSnapshot(in);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                log.info("Restored snapshot section {} ({} KB) in {} ms", participant.snapshotSection(),
+                        bytes.length / 1024, (System.nanoTime() - sectionStart) / 1_000_000);
+            });
+        }
+        log.info("Loaded snapshot {} in {} ms", snapshotFile.toAbsolutePath(), (System.nanoTime() - start) / 1_000_000);
+        return OptionalLong.of(journalSegment);
+    }
+
+    public void recoveryCompleted() {
+        recovered = true;
+    }
+
+    @Scheduled(fixedDelayString = "${redbus.snapshot.interval-ms:600000}",
+            initialDelayString = "${redbus.snapshot.interval-ms:600000}")
+    public void writeScheduled() {
+        try {
+            write();
+        } catch (Exception e) {
+            log.error("Error writing snapshot", e);
+        }
+    }
+
+    /**
+     * Writes a new snapshot and deletes the journal segments it covers.
+     */
+    public void write() throws IOException {
+        if (!enabled || !recovered || !writeLock.tryLock()) {
+            return;
+        }
+        try {
+            long start = System.nanoTime();
+            long journalSegment = journal.startNewSegment();
+
+            Map<String, byte[]> sections = participants.parallelStream()
+                    .collect(Collectors.toMap(SnapshotParticipant::snapshotSection, SnapshotManager::writeSection));
+
+            Files.createDirectories(snapshotFile.getParent());
+            Path tempFile = snapshotFile.resolveSibling(SNAPSHOT_FILE + ".tmp");
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                        Channels.newOutputStream(channel), 1 << 16));
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(journalSegment);
+                out.writeInt(sections.size());
+                for (Map.Entry<String, byte[]> section : sections.entrySet()) {
+                    out.writeUTF(section.getKey());
+                    out.writeInt(section.getValue().length);
+                    out.write(section.getValue());
+                }
+                out.flush();
+                channel.force(true);
+            }
+            Files.move(tempFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            int deleted = journal.deleteSegmentsBefore(journalSegment);
+            log.info("Wrote snapshot ({} KB) in {} ms, deleted {} journal segments",
+                    Files.size(snapshotFile) / 1024, (System.nanoTime() - start) / 1_000_000, deleted);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private static byte[] writeSection(SnapshotParticipant participant) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 16);
+        try (SnapshotOutput out = new SnapshotOutput(new BufferedOutputStream(bytes, 1 << 16))) {
+            participant.writeSnapshot(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,56 @@
+package com.redbus.journal;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Binary writer for snapshot sections. Low-cardinality strings (city ids, dates, times) are written once and
+ * then referenced by index, which keeps sections with millions of trip parts compact.
+ */
+public class SnapshotOutput extends DataOutputStream {
+
+    private final Map<String, Integer> symbols = new HashMap<>();
+
+    public SnapshotOutput(OutputStream out) {
+        super(out);
+    }
+
+    public void writeSymbol(String value) throws IOException {
+        if (value == null) {
+            writeInt(-1);
+            return;
+        }
+        Integer index = symbols.get(value);
+        if (index != null) {
+            writeInt(index);
+        } else {
+            writeInt(symbols.size());
+            writeUTF(value);
+            symbols.put(value, symbols.size());
+        }
+    }
+
+    public void writeNullableUTF(String value) throws IOException {
+        writeBoolean(value != null);
+        if (value != null) {
+            writeUTF(value);
+        }
+    }
+
+    public void writeDateTime(LocalDateTime value) throws IOException {
+        writeBoolean(value != null);
+        if (value != null) {
+            writeLong(value.toEpochSecond(ZoneOffset.UTC));
+            writeInt(value.getNano());
+        }
+    }
+
+    public void writeEnum(Enum<?> value) throws IOException {
+        writeByte(value != null ? value.ordinal() : -1);
+    }
+}
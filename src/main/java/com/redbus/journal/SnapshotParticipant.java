@@ -0,0 +1,20 @@
+package com.redbus.journal;
+
+import java.io.IOException;
+
+/**
+ * A repository whose state is written to the binary snapshot as one named section and restored from it at boot.
+ */
+public interface SnapshotParticipant {
+
+    String snapshotSection();
+
+    // Sections of a lower phase are restored first; sections within a phase are restored in parallel
+    default int snapshotPhase() {
+        return 0;
+    }
+
+    void writeSnapshot(SnapshotOutput out) throws IOException;
+
+    void readSnapshot(SnapshotInput in) throws IOException;
+}
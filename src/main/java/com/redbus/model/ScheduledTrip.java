@@ -0,0 +1,9 @@
+package com.redbus.model;
+
+import java.util.List;
+
+/**
+ * A trip together with its parts, the unit of bulk schedule ingest.
+ */
+public record ScheduledTrip(Trip trip, List<TripPart> parts) {
+}
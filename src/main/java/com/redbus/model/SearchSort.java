@@ -0,0 +1,8 @@
+package com.redbus.model;
+
+public enum SearchSort {
+    PRICE,
+    DEPARTURE,
+    DURATION,
+    SEATS
+}
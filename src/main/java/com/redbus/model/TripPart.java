@@ -19,5 +19,5 @@ public class TripPart {
     private String destTime;
     private int sequence;
     private int capacity;
-    private int availableSeats;
+    private volatile int availableSeats;
 }
@@ -0,0 +1,114 @@
+package com.redbus.model;
+
+import lombok.Getter;
+
+import java.time.LocalTime;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Search projection of a trip, built once at ingest: the trip with its operator, end-point cities and
+ * parts in sequence order, plus per-city part positions so a route resolves without scanning parts.
+ * Seat availability is not copied here; it is read live from the parts.
+ */
+public class TripSearchRow {
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    @Getter private final Trip trip;
+    @Getter private final String operator;
+    @Getter private final City sourceCity;
+    @Getter private final City destCity;
+    @Getter private final List<TripPart> parts;
+
+    private final Map<String, Integer> firstBoarding;
+    private final Map<String, Integer> firstAlighting;
+    private final int[] capacityPrefix;
+    private final int[] departureMinutes;
+    private final int[] arrivalMinutes;
+
+    public TripSearchRow(Trip trip, String operator, City sourceCity, City destCity, List<TripPart> parts) {
+        this.trip = trip;
+        this.operator = operator;
+        this.sourceCity = sourceCity;
+        this.destCity = destCity;
+        this.parts = parts.stream()
+                .sorted(Comparator.comparingInt(TripPart::getSequence))
+                .toList();
+
+        Map<String, Integer> boarding = new HashMap<>();
+        Map<String, Integer> alighting = new HashMap<>();
+        int[] prefix = new int[this.parts.size() + 1];
+        this.departureMinutes = new int[this.parts.size()];
+        this.arrivalMinutes = new int[this.parts.size()];
+        for (int i = 0; i < this.parts.size(); i++) {
+            TripPart part = this.parts.get(i);
+            boarding.putIfAbsent(part.getSourceCityId(), i);
+            alighting.putIfAbsent(part.getDestCityId(), i);
+            prefix[i + 1] = prefix[i] + part.getCapacity();
+            departureMinutes[i] = minuteOfDay(part.getSourceTime());
+            arrivalMinutes[i] = minuteOfDay(part.getDestTime());
+        }
+        this.firstBoarding = Collections.unmodifiableMap(boarding);
+        this.firstAlighting = Collections.unmodifiableMap(alighting);
+        this.capacityPrefix = prefix;
+    }
+
+    public String getTripId() {
+        return trip.getTripId();
+    }
+
+    // Index of the first part boarding at the city, or -1
+    public int boardingIndex(String cityId) {
+        return firstBoarding.getOrDefault(cityId, -1);
+    }
+
+    // Index of the first part alighting at the city, or -1
+    public int alightingIndex(String cityId) {
+        return firstAlighting.getOrDefault(cityId, -1);
+    }
+
+    // Parts travelled from index `from` to index `to` (inclusive)
+    public List<TripPart> segments(int from, int to) {
+        if (from < 0 || to < from) {
+            return Collections.emptyList();
+        }
+        return parts.subList(from, to + 1);
+    }
+
+    // Bottleneck availability over the parts from `from` to `to`, read live from the seat counters
+    public int availableSeats(int from, int to) {
+        if (from < 0 || to < from) {
+            return 0;
+        }
+        int available = Integer.MAX_VALUE;
+        for (int i = from; i <= to; i++) {
+            available = Math.min(available, parts.get(i).getAvailableSeats());
+        }
+        return available;
+    }
+
+    // Departure of part `from`, in minutes after midnight of the trip date
+    public int departureMinute(int from) {
+        return departureMinutes[from];
+    }
+
+    // Minutes from boarding part `from` to arrival of part `to`, counting overnight legs forward
+    public int durationMinutes(int from, int to) {
+        int duration = arrivalMinutes[to] - departureMinutes[from];
+        return duration < 0 ? duration + MINUTES_PER_DAY : duration;
+    }
+
+    public int totalCapacity(int from, int to) {
+        if (from < 0 || to < from) {
+            return 0;
+        }
+        return capacityPrefix[to + 1] - capacityPrefix[from];
+    }
+
+    private static int minuteOfDay(String time) {
+        return time != null ? LocalTime.parse(time).toSecondOfDay() / 60 : 0;
+    }
+}
@@ -9,8 +9,11 @@ public interface BookingRepository {
     Optional<Booking> findById(String bookingId);
     List<Booking> findByUserId(String userId);
     List<Booking> findByUserIdAndStatus(String userId, BookingStatus status);
+    // Newest first, starting after the booking afterBookingId (null for the first page); a null status matches any
+    List<Booking> findByUserIdAndStatus(String userId, BookingStatus status, String afterBookingId, int limit);
+    List<Booking> findByStatus(BookingStatus status);
     void save(Booking booking);
     void updateStatus(String bookingId, BookingStatus status);
-    List<Booking> findExpiredReservations();
-    void deleteExpiredReservations();
+    // Moves the booking from one status to another atomically; false if it was not in the expected status
+    boolean transitionStatus(String bookingId, BookingStatus expected, BookingStatus status);
 }
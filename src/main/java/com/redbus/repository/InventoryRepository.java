@@ -1,16 +1,25 @@
 package com.redbus.repository;
 
+import com.redbus.model.ScheduledTrip;
 import com.redbus.model.Trip;
 import com.redbus.model.TripPart;
+import com.redbus.model.TripSearchRow;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 public interface InventoryRepository {
 
-    // Redis operations:- These 2 operations will interact with Redis, while others will interact with DB
-    List<String> getTripIdsFromRedis(String sourceCityId, String destCityId, String date);
+    // Redis operations:- These operations will interact with Redis, while others will interact with DB
+    // An empty Optional is a cache miss; an empty list is a cached "no trips" result
+    Optional<List<String>> getTripIdsFromRedis(String sourceCityId, String destCityId, String date);
     void setTripIdsInRedis(String sourceCityId, String destCityId, String date, List<String> tripIds);
-    void invalidateTripIdsInRedis(String sourceCityId, String destCityId, String date)
+    void invalidateTripIdsInRedis(String sourceCityId, String destCityId, String date);
+    // Read before searching; the result is then only cached if the route was not invalidated in between
+    long getTripIdsGenerationInRedis(String sourceCityId, String destCityId, String date);
+    boolean setTripIdsInRedisIfNotInvalidated(String sourceCityId, String destCityId, String date, List<String> tripIds,
+                                              long generation);
     
     // Trip operations
     List<Trip> findTripsByIds(List<String> ids);
@@ -20,15 +29,34 @@ public interface InventoryRepository {
     // TripPart operations
     List<TripPart> findPartsByTrip(String tripId);
     void upsertParts(List<TripPart> parts);
+
+    // Bulk ingest: applies many trips with their parts as one batch, invalidating each cached route once
+    void upsertBatch(List<ScheduledTrip> batch);
+
+    // Denormalized search projection of a trip, maintained on trip and part upserts
+    Optional<TripSearchRow> findSearchRow(String tripId);
     
     // Seat availability operations (per trip part)
     boolean decrementSeats(String tripPartId, int seats);
     void incrementSeats(String tripPartId, int seats);
+
+    // Reserve or release seats on several trip parts at once; reservation is all-or-nothing
+    boolean reserveSeats(List<String> tripPartIds, int seats);
+    // Fenced reservation under a lease: throws LockRepository.StaleLeaseException if a later lease on the same key
+    // has already written
+    boolean reserveSeats(List<String> tripPartIds, int seats, LockRepository.Lease lease);
+    void releaseSeats(List<String> tripPartIds, int seats);
+
+    // Sets every part's availability to its capacity minus the seats held on it, used after recovery
+    void resetSeatCounts(Map<String, Integer> heldSeatsByPart);
     
     // Helper method to get all trip parts for a trip
 
     // Search trips by source and destination
     List<String> searchTrips(String sourceCityId, String destCityId, String date);
 
+    // Transfer graph: cities reachable on a single trip from the source city on the date
+    Set<String> findReachableCities(String sourceCityId, String date);
+
     List<Trip> findAllTrips();
 }
@@ -1,6 +1,56 @@
 package com.redbus.repository;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Leased locks on string keys. A lease is not tied to a thread: it lapses on its own after the lease time unless
+ * renewed, so a stuck holder cannot keep a key forever. Every grant carries a fencing token that only grows. A
+ * write made under a lease goes through {@link #writeFenced}, which checks the token in the same atomic step as the
+ * write and refuses it once a later holder of the key has written, as
+ * {@link InventoryRepository#reserveSeats(java.util.List, int, Lease)} does.
+ */
 public interface LockRepository {
-    boolean tryLock(String key);
-    void unlock(String key);
+
+    /**
+     * Takes the lock on the key, waiting up to {@code wait} for the current holder; empty if it is still held then,
+     * or if the calling thread is interrupted.
+     */
+    Optional<Lease> tryLock(String key, Duration wait, Duration leaseTime);
+
+    /**
+     * Extends a lease that is still held; empty if it has already lapsed.
+     */
+    Optional<Lease> renew(Lease lease, Duration leaseTime);
+
+    /**
+     * Releases the lease; does nothing if it has lapsed or been taken over.
+     */
+    void unlock(Lease lease);
+
+    /**
+     * Whether the lease is still the current holder of its key. Only a hint: the lease can lapse right after, so
+     * writes rely on the fencing token instead.
+     */
+    boolean isHeld(Lease lease);
+
+    /**
+     * Runs a write made under the lease unless a later lease on the key has already written, and records the token
+     * if the write reports success; throws {@link StaleLeaseException} when refused.
+     */
+    boolean writeFenced(Lease lease, BooleanSupplier write);
+
+    record Lease(String key, long fencingToken, Instant expiresAt) {
+    }
+
+    /**
+     * A write was attempted under a lease whose key a later holder has already written under.
+     */
+    class StaleLeaseException extends IllegalStateException {
+        public StaleLeaseException(Lease lease) {
+            super("Lease on " + lease.key() + " with fencing token " + lease.fencingToken() + " was superseded");
+        }
+    }
 }
@@ -1,21 +1,45 @@
 package com.redbus.repository.impl;
 
+import com.redbus.journal.JournalParticipant;
+import com.redbus.journal.JournalRecordType;
+import com.redbus.journal.MutationJournal;
+import com.redbus.journal.SnapshotInput;
+import com.redbus.journal.SnapshotOutput;
+import com.redbus.journal.SnapshotParticipant;
 import com.redbus.model.Booking;
 import com.redbus.model.BookingStatus;
 import com.redbus.repository.BookingRepository;
+import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Repository;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.stream.Collectors;
 
 @Repository
-public class InMemoryBookingRepository implements BookingRepository {
+@RequiredArgsConstructor
+public class InMemoryBookingRepository implements BookingRepository, JournalParticipant, SnapshotParticipant {
     private final Map<String, Booking> bookings = new ConcurrentHashMap<>();
 
+    // Secondary indexes: a user's bookings newest first, and booking ids per status. They are only changed
+    // inside bookings.compute for the booking concerned, so a booking and its index entries move together.
+    private final Map<String, NavigableSet<UserBookingKey>> bookingsByUser = new ConcurrentHashMap<>();
+    private final Map<BookingStatus, Set<String>> bookingsByStatus = statusIndex();
+
+    private final MutationJournal journal;
+
     @Override
     public Optional<Booking> findById(String bookingId) {
         return Optional.ofNullable(bookings.get(bookingId));
@@ -23,44 +47,209 @@ public class InMemoryBookingRepository implements BookingRepository {
 
     @Override
     public List<Booking> findByUserId(String userId) {
-        return bookings.values().stream()
-                .filter(booking -> booking.getUserId().equals(userId))
-                .collect(Collectors.toList());
+        return findByUserIdAndStatus(userId, null, null, Integer.MAX_VALUE);
     }
 
     @Override
     public List<Booking> findByUserIdAndStatus(String userId, BookingStatus status) {
-        return bookings.values().stream()
-                .filter(booking -> booking.getUserId().equals(userId) && booking.getStatus() == status)
+        return findByUserIdAndStatus(userId, status, null, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Booking> findByUserIdAndStatus(String userId, BookingStatus status, String afterBookingId, int limit) {
+        NavigableSet<UserBookingKey> keys = bookingsByUser.get(userId);
+        if (keys == null) {
+            return List.of();
+        }
+        if (afterBookingId != null) {
+            Booking after = bookings.get(afterBookingId);
+            if (after == null || !after.getUserId().equals(userId)) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            keys = keys.tailSet(UserBookingKey.of(after), false);
+        }
+
+        List<Booking> page = new ArrayList<>(Math.min(limit, 64));
+        for (UserBookingKey key : keys) {
+            Booking booking = bookings.get(key.bookingId());
+            if (booking != null && (status == null || booking.getStatus() == status)) {
+                page.add(booking);
+                if (page.size() == limit) {
+                    break;
+                }
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public List<Booking> findByStatus(BookingStatus status) {
+        return bookingsByStatus.get(status).stream()
+                .map(bookings::get)
+                .filter(Objects::nonNull)
                 .collect(Collectors.toList());
     }
 
     @Override
     public void save(Booking booking) {
-        bookings.put(booking.getBookingId(), booking);
+        journal.checkNotFailed();
+        put(booking);
+        journal.append(JournalRecordType.BOOKING_SAVE, booking);
     }
 
     @Override
     public void updateStatus(String bookingId, BookingStatus status) {
-        Booking booking = bookings.get(bookingId);
-        if (booking != null) {
+        journal.checkNotFailed();
+        if (applyStatus(bookingId, status)) {
+            journal.append(JournalRecordType.BOOKING_STATUS, new StatusChange(bookingId, status));
+        }
+    }
+
+    @Override
+    public boolean transitionStatus(String bookingId, BookingStatus expected, BookingStatus status) {
+        journal.checkNotFailed();
+        boolean[] moved = new boolean[1];
+        bookings.computeIfPresent(bookingId, (id, booking) -> {
+            if (booking.getStatus() == expected) {
+                booking.setStatus(status);
+                indexStatus(id, status);
+                moved[0] = true;
+            }
+            return booking;
+        });
+        if (moved[0]) {
+            journal.append(JournalRecordType.BOOKING_STATUS, new StatusChange(bookingId, status));
+        }
+        return moved[0];
+    }
+
+    private void put(Booking booking) {
+        bookings.compute(booking.getBookingId(), (id, previous) -> {
+            if (previous != null) {
+                unindexUser(previous);
+            }
+            bookingsByUser.computeIfAbsent(booking.getUserId(), user -> new ConcurrentSkipListSet<>())
+                    .add(UserBookingKey.of(booking));
+            indexStatus(id, booking.getStatus());
+            return booking;
+        });
+    }
+
+    private boolean applyStatus(String bookingId, BookingStatus status) {
+        return bookings.computeIfPresent(bookingId, (id, booking) -> {
             booking.setStatus(status);
+            indexStatus(id, status);
+            return booking;
+        }) != null;
+    }
+
+    // Empty per-user sets are kept: dropping one could race with a booking being added to it
+    private void unindexUser(Booking booking) {
+        NavigableSet<UserBookingKey> keys = bookingsByUser.get(booking.getUserId());
+        if (keys != null) {
+            keys.remove(UserBookingKey.of(booking));
         }
     }
 
+    // Puts the id in the set of its status and takes it out of the others
+    private void indexStatus(String bookingId, BookingStatus status) {
+        bookingsByStatus.forEach((indexed, ids) -> {
+            if (indexed == status) {
+                ids.add(bookingId);
+            } else {
+                ids.remove(bookingId);
+            }
+        });
+    }
+
+    private static Map<BookingStatus, Set<String>> statusIndex() {
+        Map<BookingStatus, Set<String>> index = new EnumMap<>(BookingStatus.class);
+        for (BookingStatus status : BookingStatus.values()) {
+            index.put(status, ConcurrentHashMap.newKeySet());
+        }
+        return index;
+    }
+
     @Override
-    public List<Booking> findExpiredReservations() {
-        LocalDateTime now = LocalDateTime.now();
-        return bookings.values().stream()
-                .filter(booking -> booking.getStatus() == BookingStatus.RESERVED 
-                        && booking.getExpiresAt() != null 
-                        && booking.getExpiresAt().isBefore(now))
-                .collect(Collectors.toList());
+    public Set<JournalRecordType> journalRecordTypes() {
+        return EnumSet.of(JournalRecordType.BOOKING_SAVE, JournalRecordType.BOOKING_STATUS);
     }
 
     @Override
-    public void deleteExpiredReservations() {
-        List<Booking> expiredBookings = findExpiredReservations();
-        expiredBookings.forEach(booking -> bookings.remove(booking.getBookingId()));
+    public void replay(JournalRecordType type, byte[] payload, MutationJournal journal) {
+        switch (type) {
+            case BOOKING_SAVE -> put(journal.decode(payload, Booking.class));
+            case BOOKING_STATUS -> {
+                StatusChange change = journal.decode(payload, StatusChange.class);
+                applyStatus(change.bookingId(), change.status());
+            }
+            default -> throw new IllegalArgumentException("Unexpected journal record " + type);
+        }
+    }
+
+    @Override
+    public String snapshotSection() {
+        return "bookings";
+    }
+
+    @Override
+    public void writeSnapshot(SnapshotOutput out) throws IOException {
+        List<Booking> snapshot = new ArrayList<>(bookings.values());
+        out.writeInt(snapshot.size());
+        for (Booking booking : snapshot) {
+            out.writeUTF(booking.getBookingId());
+            out.writeUTF(booking.getUserId());
+            out.writeUTF(booking.getTripId());
+            out.writeSymbol(booking.getSourceCityId());
+            out.writeSymbol(booking.getDestCityId());
+            out.writeInt(booking.getSeats());
+            out.writeEnum(booking.getStatus());
+            out.writeDateTime(booking.getCreatedAt());
+            out.writeDateTime(booking.getExpiresAt());
+            out.writeLong(booking.getPricePaise());
+            out.writeNullableUTF(booking.getPaymentId());
+        }
+    }
+
+    @Override
+    public void readSnapshot(SnapshotInput in) throws IOException {
+        BookingStatus[] statuses = BookingStatus.values();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            Booking booking = Booking.builder()
+                    .bookingId(in.readUTF())
+                    .userId(in.readUTF())
+                    .tripId(in.readUTF())
+                    .sourceCityId(in.readSymbol())
+                    .destCityId(in.readSymbol())
+                    .seats(in.readInt())
+                    .status(in.readEnum(statuses))
+                    .createdAt(in.readDateTime())
+                    .expiresAt(in.readDateTime())
+                    .pricePaise(in.readLong())
+                    .paymentId(in.readNullableUTF())
+                    .build();
+            put(booking);
+        }
+    }
+
+    record StatusChange(String bookingId, BookingStatus status) {
+    }
+
+    // Orders a user's bookings newest first; the id breaks ties between bookings created in the same instant
+    private record UserBookingKey(LocalDateTime createdAt, String bookingId) implements Comparable<UserBookingKey> {
+
+        private static final Comparator<UserBookingKey> ORDER = Comparator
+                .comparing(UserBookingKey::createdAt, Comparator.nullsLast(Comparator.<LocalDateTime>reverseOrder()))
+                .thenComparing(UserBookingKey::bookingId);
+
+        static UserBookingKey of(Booking booking) {
+            return new UserBookingKey(booking.getCreatedAt(), booking.getBookingId());
+        }
+
+        @Override
+        public int compareTo(UserBookingKey other) {
+            return ORDER.compare(this, other);
+        }
     }
 }
@@ -1,16 +1,20 @@
 package com.redbus.repository.impl;
 
+import com.redbus.journal.SnapshotInput;
+import com.redbus.journal.SnapshotOutput;
+import com.redbus.journal.SnapshotParticipant;
 import com.redbus.model.Bus;
 import com.redbus.repository.BusRepository;
 import org.springframework.stereotype.Repository;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 
 @Repository
-public class InMemoryBusRepository implements BusRepository {
+public class InMemoryBusRepository implements BusRepository, SnapshotParticipant {
     private final Map<String, Bus> buses = new ConcurrentHashMap<>();
 
     @Override
@@ -27,4 +31,34 @@ public class InMemoryBusRepository implements BusRepository {
     public void save(Bus bus) {
         buses.put(bus.getBusId(), bus);
     }
+
+    @Override
+    public String snapshotSection() {
+        return "buses";
+    }
+
+    @Override
+    public void writeSnapshot(SnapshotOutput out) throws IOException {
+        List<Bus> snapshot = findAll();
+        out.writeInt(snapshot.size());
+        for (Bus bus : snapshot) {
+            out.writeUTF(bus.getBusId());
+            out.writeNullableUTF(bus.getOwnerId());
+            out.writeNullableUTF(bus.getOperator());
+            out.writeNullableUTF(bus.getParkingAddress());
+        }
+    }
+
+    @Override
+    public void readSnapshot(SnapshotInput in) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            save(Bus.builder()
+                    .busId(in.readUTF())
+                    .ownerId(in.readNullableUTF())
+                    .operator(in.readNullableUTF())
+                    .parkingAddress(in.readNullableUTF())
+                    .build());
+        }
+    }
 }
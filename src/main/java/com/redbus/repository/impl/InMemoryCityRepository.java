@@ -1,16 +1,20 @@
 package com.redbus.repository.impl;
 
+import com.redbus.journal.SnapshotInput;
+import com.redbus.journal.SnapshotOutput;
+import com.redbus.journal.SnapshotParticipant;
 import com.redbus.model.City;
 import com.redbus.repository.CityRepository;
 import org.springframework.stereotype.Repository;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 
 @Repository
-public class InMemoryCityRepository implements CityRepository {
+public class InMemoryCityRepository implements CityRepository, SnapshotParticipant {
     private final Map<String, City> cities = new ConcurrentHashMap<>();
     private final Map<String, City> citiesByName = new ConcurrentHashMap<>();
 
@@ -34,4 +38,34 @@ public class InMemoryCityRepository implements CityRepository {
         cities.put(city.getCityId(), city);
         citiesByName.put(city.getName().toLowerCase(), city);
     }
+
+    @Override
+    public String snapshotSection() {
+        return "cities";
+    }
+
+    @Override
+    public void writeSnapshot(SnapshotOutput out) throws IOException {
+        List<City> snapshot = findAll();
+        out.writeInt(snapshot.size());
+        for (City city : snapshot) {
+            out.writeUTF(city.getCityId());
+            out.writeUTF(city.getName());
+            out.writeDouble(city.getLatitude());
+            out.writeDouble(city.getLongitude());
+        }
+    }
+
+    @Override
+    public void readSnapshot(SnapshotInput in) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            save(City.builder()
+                    .cityId(in.readUTF())
+                    .name(in.readUTF())
+                    .latitude(in.readDouble())
+                    .longitude(in.readDouble())
+                    .build());
+        }
+    }
 }
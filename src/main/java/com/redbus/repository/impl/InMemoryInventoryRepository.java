@@ -1,16 +1,38 @@
 package com.redbus.repository.impl;
 
+import com.redbus.journal.JournalParticipant;
+import com.redbus.journal.JournalRecordType;
+import com.redbus.journal.MutationJournal;
+import com.redbus.journal.SnapshotInput;
+import com.redbus.journal.SnapshotOutput;
+import com.redbus.journal.SnapshotParticipant;
+import com.redbus.model.Bus;
+import com.redbus.model.PricingType;
+import com.redbus.model.ScheduledTrip;
 import com.redbus.model.Trip;
 import com.redbus.model.TripPart;
+import com.redbus.model.TripSearchRow;
+import com.redbus.repository.BusRepository;
+import com.redbus.repository.CityRepository;
 import com.redbus.repository.InventoryRepository;
+import com.redbus.repository.LockRepository;
+import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Repository;
 
+import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Repository
-public class InMemoryInventoryRepository implements InventoryRepository {
+@RequiredArgsConstructor
+public class InMemoryInventoryRepository implements InventoryRepository, JournalParticipant, SnapshotParticipant {
+
+    // Trips per journal record on bulk ingest, so one record stays a reasonable size
+    private static final int JOURNAL_BATCH_TRIPS = 1024;
 
     //Store trips by tripId
     private final Map<String, Trip> trips = new ConcurrentHashMap<>();
@@ -18,29 +40,55 @@ public class InMemoryInventoryRepository implements InventoryRepository {
     //Store trip parts by tripId
     private final Map<String, List<TripPart>> tripParts = new ConcurrentHashMap<>();
 
-    // Simulated Redis index for trip searches on source, destination, and date
-    private final Map<String, List<String>> searchIndex = new ConcurrentHashMap<>();
+    //Seat counters indexed by tripPartId, reserved and released without locking
+    private final SeatReservationEngine seatEngine = new SeatReservationEngine();
+
+    // Simulated Redis cache for trip searches on source, destination, and date
+    private final SearchResultCache searchCache;
+
+    // Route index: every (boarding city, alighting city, date) a trip serves, ordered by departure
+    private final Map<String, NavigableSet<RouteEntry>> routeIndex = new ConcurrentHashMap<>();
+
+    // Transfer graph: cities reachable directly from a city on a date ("cityId_date"), with the number
+    // of trips serving each hop so re-upserted trips can be subtracted
+    private final Map<String, Map<String, Integer>> reachableCities = new ConcurrentHashMap<>();
 
-    private final Map<String, List<TripPart>> tripPartsFromSourceOnDate = new ConcurrentHashMap<>();
-    private final Map<String, List<TripPart>> tripPartsFromDestinationOnDate = new ConcurrentHashMap<>();
+    // Search projection per tripId, denormalized from the trip, its parts, bus and cities
+    private final Map<String, TripSearchRow> searchRows = new ConcurrentHashMap<>();
 
+    private final CityRepository cityRepository;
+    private final BusRepository busRepository;
+    private final MutationJournal journal;
+    private final LockRepository lockRepository;
 
     @Override
-    public List<String> getTripIdsFromRedis(String sourceCityId, String destCityId, String date) {
+    public Optional<List<String>> getTripIdsFromRedis(String sourceCityId, String destCityId, String date) {
         String key = getRedisCacheKey(sourceCityId, destCityId, date);
-        return searchIndex.getOrDefault(key, Collections.emptyList());
+        return searchCache.get(key);
     }
 
     @Override
     public void setTripIdsInRedis(String sourceCityId, String destCityId, String date, List<String> tripIds) {
         String key = getRedisCacheKey(sourceCityId, destCityId, date);
-        searchIndex.put(key, new ArrayList<>(tripIds));
+        searchCache.put(key, tripIds);
     }
 
     @Override
     public void invalidateTripIdsInRedis(String sourceCityId, String destCityId, String date) {
         String key = getRedisCacheKey(sourceCityId, destCityId, date);
-        searchIndex.remove(key);
+        searchCache.invalidate(key);
+    }
+
+    @Override
+    public long getTripIdsGenerationInRedis(String sourceCityId, String destCityId, String date) {
+        return searchCache.generation(getRedisCacheKey(sourceCityId, destCityId, date));
+    }
+
+    @Override
+    public boolean setTripIdsInRedisIfNotInvalidated(String sourceCityId, String destCityId, String date,
+                                                     List<String> tripIds, long generation) {
+        return searchCache.putIfNotInvalidated(getRedisCacheKey(sourceCityId, destCityId, date), tripIds,
+                generation);
     }
 
     @Override
@@ -58,122 +106,336 @@ public class InMemoryInventoryRepository implements InventoryRepository {
 
     @Override
     public void upsertTrip(Trip trip) {
+        journal.checkNotFailed();
+        // Applied before it is journaled, like every other write: a snapshot that starts a new journal segment
+        // after the append must already see the change, or deleting the old segment would lose it
+        applyTrip(trip);
+        journal.append(JournalRecordType.TRIP_UPSERT, trip);
+    }
+
+    private void applyTrip(Trip trip) {
         trips.put(trip.getTripId(), trip);
-        
-        // Update the "all_trips" index
-        List<String> allTripIds = searchIndex.getOrDefault("all_trips", new ArrayList<>());
-        if (!allTripIds.contains(trip.getTripId())) {
-            allTripIds.add(trip.getTripId());
-            searchIndex.put("all_trips", allTripIds);
+
+        List<TripPart> parts = tripParts.get(trip.getTripId());
+        if (parts != null) {
+            refreshSearchRow(trip, parts);
         }
     }
 
     @Override
     public List<TripPart> findPartsByTrip(String tripId) {
+        TripSearchRow row = searchRows.get(tripId);
+        if (row != null) {
+            return row.getParts();
+        }
         return tripParts.getOrDefault(tripId, Collections.emptyList()).stream()
                 .sorted(Comparator.comparingInt(TripPart::getSequence))
                 .collect(Collectors.toList());
     }
 
+    @Override
+    public Optional<TripSearchRow> findSearchRow(String tripId) {
+        return Optional.ofNullable(searchRows.get(tripId));
+    }
+
     @Override
     public void upsertParts(List<TripPart> parts) {
+        journal.checkNotFailed();
+        if (!parts.isEmpty()) {
+            checkCapacity(parts);
+            applyParts(parts);
+            journal.append(JournalRecordType.PARTS_UPSERT, new PartsUpsert(parts));
+        }
+    }
+
+    @Override
+    public void upsertBatch(List<ScheduledTrip> batch) {
+        journal.checkNotFailed();
+        batch.forEach(scheduled -> checkCapacity(scheduled.parts()));
+        applyBatch(batch);
+        for (int from = 0; from < batch.size(); from += JOURNAL_BATCH_TRIPS) {
+            List<ScheduledTrip> chunk = batch.subList(from, Math.min(batch.size(), from + JOURNAL_BATCH_TRIPS));
+            journal.append(JournalRecordType.TRIPS_BATCH_UPSERT, new BatchUpsert(chunk));
+        }
+    }
+
+    // Trips are independent of each other, so they are indexed in parallel; routes touched by several
+    // trips of the batch are collected and their cached results dropped once at the end
+    private void applyBatch(List<ScheduledTrip> batch) {
+        Set<String> touchedRoutes = ConcurrentHashMap.newKeySet();
+        batch.parallelStream().forEach(scheduled -> {
+            trips.put(scheduled.trip().getTripId(), scheduled.trip());
+            indexParts(scheduled.parts(), touchedRoutes::add);
+        });
+        touchedRoutes.forEach(searchCache::invalidate);
+    }
+
+    // Re-upserted parts keep the seats held on them, so their capacity cannot drop below that
+    private void checkCapacity(List<TripPart> parts) {
+        for (TripPart part : parts) {
+            int held = seatEngine.held(part.getTripPartId());
+            if (part.getCapacity() < held) {
+                throw new IllegalArgumentException("Capacity " + part.getCapacity() + " of trip part "
+                        + part.getTripPartId() + " is below the " + held + " seats held on it");
+            }
+        }
+    }
+
+    private void applyParts(List<TripPart> parts) {
+        indexParts(parts, searchCache::invalidate);
+    }
+
+    // Indexes the parts of one trip, replacing any it had before, and reports the cache key of every route
+    // added or removed
+    private void indexParts(List<TripPart> parts, Consumer<String> touchedRoute) {
         if (!parts.isEmpty()) {
             String tripId = parts.get(0).getTripId();
-            tripParts.put(tripId, new ArrayList<>(parts));
-            
-            // Initialize available seats for each trip part
-            for (TripPart part : parts) {
-                tripPartsFromSourceOnDate.putIfAbsent(getTripPartKey(part.getSourceCityId(), part.getDate()), new ArrayList<>());
-                tripPartsFromSourceOnDate.get(getTripPartKey(part.getSourceCityId(), part.getDate())).add(part);
-                tripPartsFromDestinationOnDate.putIfAbsent(getTripPartKey(part.getDestCityId(), part.getDate()), new ArrayList<>());
-                tripPartsFromDestinationOnDate.get(getTripPartKey(part.getDestCityId(), part.getDate())).add(part);
+            // Registered first: a part whose capacity fell below its held seats since checkCapacity fails here,
+            // before the trip is changed
+            parts.forEach(seatEngine::register);
+            List<TripPart> previousParts = tripParts.put(tripId, new ArrayList<>(parts));
+
+            Trip trip = trips.get(tripId);
+            if (trip != null) {
+                refreshSearchRow(trip, parts);
             }
 
-            for(int i = 0; i < parts.size(); i++) {
-                System.out.println("Trip Part: " + parts.get(i));
-                for(int j = 0; j < parts.size(); j++) {
-                    invalidateTripIdsInRedis(parts.get(i).getSourceCityId(), parts.get(j).getDestCityId(), parts.get(i).getDate());
-                }
+            // Re-upserting a trip replaces its parts, so drop ids and routes that are no longer part of it
+            if (previousParts != null) {
+                previousParts.forEach(seatEngine::unregister);
+                forEachRoute(previousParts, (key, entry) -> {
+                    NavigableSet<RouteEntry> entries = routeIndex.get(key);
+                    if (entries != null) {
+                        entries.remove(entry);
+                    }
+                    reachableCities.computeIfPresent(getTripPartKey(entry.sourceCityId(), entry.date()), (k, hops) -> {
+                        hops.computeIfPresent(entry.destCityId(), (city, trips) -> trips > 1 ? trips - 1 : null);
+                        return hops.isEmpty() ? null : hops;
+                    });
+                    touchedRoute.accept(getRedisCacheKey(entry.sourceCityId(), entry.destCityId(), entry.date()));
+                });
             }
+
+            // Materialize every route the trip serves and drop the cached search results for it
+            forEachRoute(parts, (key, entry) -> {
+                routeIndex.computeIfAbsent(key, k -> new ConcurrentSkipListSet<>()).add(entry);
+                reachableCities.compute(getTripPartKey(entry.sourceCityId(), entry.date()), (k, hops) -> {
+                    Map<String, Integer> updated = hops != null ? hops : new ConcurrentHashMap<>();
+                    updated.merge(entry.destCityId(), 1, Integer::sum);
+                    return updated;
+                });
+                touchedRoute.accept(getRedisCacheKey(entry.sourceCityId(), entry.destCityId(), entry.date()));
+            });
         }
     }
 
     @Override
     public boolean decrementSeats(String tripPartId, int seats) {
-        try {
-            TripPart part = findTripPartByScheduleId(tripPartId);
-            if (part == null || part.getAvailableSeats() < seats) {
-                return false; // Not enough seats
-            }
-            part.setAvailableSeats(part.getAvailableSeats() - seats);
-            return true;
-        } catch (Exception e) {
+        return reserveSeats(List.of(tripPartId), seats);
+    }
+
+    @Override
+    public void incrementSeats(String tripPartId, int seats) {
+        releaseSeats(List.of(tripPartId), seats);
+    }
+
+    @Override
+    public boolean reserveSeats(List<String> tripPartIds, int seats) {
+        journal.checkNotFailed();
+        if (!seatEngine.reserve(tripPartIds, seats)) {
             return false;
         }
+        journal.append(JournalRecordType.SEATS_RESERVED, new SeatChange(tripPartIds, seats));
+        return true;
     }
 
     @Override
-    public void incrementSeats(String tripPartId, int seats) {
-        TripPart part = findTripPartByScheduleId(tripPartId);
-        part.setAvailableSeats(part.getAvailableSeats() + seats);
+    public boolean reserveSeats(List<String> tripPartIds, int seats, LockRepository.Lease lease) {
+        journal.checkNotFailed();
+        if (!lockRepository.writeFenced(lease, () -> seatEngine.reserve(tripPartIds, seats))) {
+            return false;
+        }
+        journal.append(JournalRecordType.SEATS_RESERVED, new SeatChange(tripPartIds, seats));
+        return true;
+    }
+
+    @Override
+    public void releaseSeats(List<String> tripPartIds, int seats) {
+        journal.checkNotFailed();
+        seatEngine.release(tripPartIds, seats);
+        journal.append(JournalRecordType.SEATS_RELEASED, new SeatChange(tripPartIds, seats));
+    }
+
+    @Override
+    public void resetSeatCounts(Map<String, Integer> heldSeatsByPart) {
+        tripParts.values().forEach(parts -> parts.forEach(part -> seatEngine.reset(part.getTripPartId(),
+                part.getCapacity() - heldSeatsByPart.getOrDefault(part.getTripPartId(), 0))));
+    }
+
+    @Override
+    public Set<JournalRecordType> journalRecordTypes() {
+        return EnumSet.of(JournalRecordType.TRIP_UPSERT, JournalRecordType.PARTS_UPSERT,
+                JournalRecordType.TRIPS_BATCH_UPSERT, JournalRecordType.SEATS_RESERVED,
+                JournalRecordType.SEATS_RELEASED);
+    }
+
+    @Override
+    public void replay(JournalRecordType type, byte[] payload, MutationJournal journal) {
+        switch (type) {
+            case TRIP_UPSERT -> applyTrip(journal.decode(payload, Trip.class));
+            case PARTS_UPSERT -> applyParts(journal.decode(payload, PartsUpsert.class).parts());
+            case TRIPS_BATCH_UPSERT -> applyBatch(journal.decode(payload, BatchUpsert.class).trips());
+            // Seat changes are facts that already passed the availability check, so they are applied as-is
+            case SEATS_RESERVED -> {
+                SeatChange change = journal.decode(payload, SeatChange.class);
+                seatEngine.adjust(change.tripPartIds(), -change.seats());
+            }
+            case SEATS_RELEASED -> {
+                SeatChange change = journal.decode(payload, SeatChange.class);
+                seatEngine.adjust(change.tripPartIds(), change.seats());
+            }
+            default -> throw new IllegalArgumentException("Unexpected journal record " + type);
+        }
+    }
+
+    @Override
+    public String snapshotSection() {
+        return "inventory";
+    }
+
+    // Search rows resolve operators and cities, so inventory is restored after buses and cities
+    @Override
+    public int snapshotPhase() {
+        return 1;
+    }
+
+    @Override
+    public void writeSnapshot(SnapshotOutput out) throws IOException {
+        List<Trip> tripSnapshot = new ArrayList<>(trips.values());
+        out.writeInt(tripSnapshot.size());
+        for (Trip trip : tripSnapshot) {
+            out.writeUTF(trip.getTripId());
+            out.writeSymbol(trip.getBusId());
+            out.writeSymbol(trip.getDate());
+            out.writeSymbol(trip.getSourceCityId());
+            out.writeSymbol(trip.getDestCityId());
+            out.writeInt(trip.getCapacity());
+            out.writeEnum(trip.getPricingType());
+        }
+
+        List<List<TripPart>> partSnapshot = new ArrayList<>(tripParts.values());
+        out.writeInt(partSnapshot.size());
+        for (List<TripPart> parts : partSnapshot) {
+            out.writeInt(parts.size());
+            for (TripPart part : parts) {
+                out.writeUTF(part.getTripPartId());
+                out.writeUTF(part.getTripId());
+                out.writeSymbol(part.getDate());
+                out.writeSymbol(part.getSourceCityId());
+                out.writeSymbol(part.getDestCityId());
+                out.writeSymbol(part.getSourceTime());
+                out.writeSymbol(part.getDestTime());
+                out.writeInt(part.getSequence());
+                out.writeInt(part.getCapacity());
+                out.writeInt(part.getAvailableSeats());
+            }
+        }
+    }
+
+    @Override
+    public void readSnapshot(SnapshotInput in) throws IOException {
+        PricingType[] pricingTypes = PricingType.values();
+        int tripCount = in.readInt();
+        for (int i = 0; i < tripCount; i++) {
+            Trip trip = Trip.builder()
+                    .tripId(in.readUTF())
+                    .busId(in.readSymbol())
+                    .date(in.readSymbol())
+                    .sourceCityId(in.readSymbol())
+                    .destCityId(in.readSymbol())
+                    .capacity(in.readInt())
+                    .pricingType(in.readEnum(pricingTypes))
+                    .build();
+            trips.put(trip.getTripId(), trip);
+        }
+
+        int partGroups = in.readInt();
+        List<List<TripPart>> groups = new ArrayList<>(partGroups);
+        for (int i = 0; i < partGroups; i++) {
+            int count = in.readInt();
+            List<TripPart> parts = new ArrayList<>(count);
+            for (int j = 0; j < count; j++) {
+                parts.add(TripPart.builder()
+                        .tripPartId(in.readUTF())
+                        .tripId(in.readUTF())
+                        .date(in.readSymbol())
+                        .sourceCityId(in.readSymbol())
+                        .destCityId(in.readSymbol())
+                        .sourceTime(in.readSymbol())
+                        .destTime(in.readSymbol())
+                        .sequence(in.readInt())
+                        .capacity(in.readInt())
+                        .availableSeats(in.readInt())
+                        .build());
+            }
+            groups.add(parts);
+        }
+
+        // Trips are in place, so each trip's search row, routes and seat counters can be built independently;
+        // nothing is cached yet at boot, so there are no routes to invalidate
+        groups.parallelStream().forEach(parts -> indexParts(parts, route -> { }));
     }
 
     @Override
     public List<String> searchTrips(String sourceCityId, String destCityId, String date) {
-        tripParts.values().stream().forEach((value) -> System.out.println("tripsParts: " + value));; 
-        List<TripPart> sourceParts = getTripPartsFromSource(sourceCityId, date);
-        System.out.println("Source Parts: " + sourceParts);
-        List<TripPart> destParts = getTripPartsFromDestination(destCityId, date);
-        System.out.println("Dest Parts: " + destParts);
-        // Find trips that have both source and destination parts
-        Set<String> sourceTripIds = sourceParts.stream()
-                .map(TripPart::getTripId)
-                .collect(Collectors.toSet());
-        
-        Set<String> destTripIds = destParts.stream()
-                .map(TripPart::getTripId)
-                .collect(Collectors.toSet());
-        
-        // Find common trip IDs
-        Set<String> commonTripIds = new HashSet<>(sourceTripIds);
-        commonTripIds.retainAll(destTripIds);
-        
-        // Filter by sequence order (source should come before destination)
-        return commonTripIds.stream()
-                .filter(tripId -> {
-                    List<TripPart> allParts = tripParts.getOrDefault(tripId, Collections.emptyList());
-                    TripPart sourcePart = allParts.stream()
-                            .filter(part -> part.getSourceCityId().equals(sourceCityId))
-                            .findFirst().orElse(null);
-                    TripPart destPart = allParts.stream()
-                            .filter(part -> part.getDestCityId().equals(destCityId))
-                            .findFirst().orElse(null);
-                    
-                    return sourcePart != null && destPart != null && 
-                           sourcePart.getSequence() <= destPart.getSequence();
-                })
+        NavigableSet<RouteEntry> entries = routeIndex.get(getRouteKey(sourceCityId, destCityId, date));
+        if (entries == null) {
+            return Collections.emptyList();
+        }
+        return entries.stream()
+                .map(RouteEntry::tripId)
                 .collect(Collectors.toList());
     }
 
     @Override
-    public List<Trip> findAllTrips() {
-        return new ArrayList<>(trips.values());
+    public Set<String> findReachableCities(String sourceCityId, String date) {
+        Map<String, Integer> hops = reachableCities.get(getTripPartKey(sourceCityId, date));
+        return hops != null ? Set.copyOf(hops.keySet()) : Collections.emptySet();
     }
 
-    private TripPart findTripPartByScheduleId(String tripPartId) {
-        return tripParts.values().stream()
-                .flatMap(List::stream)
-                .filter(part -> part.getTripPartId().equals(tripPartId))
-                .findFirst()
-                .orElse(null);
+    @Override
+    public List<Trip> findAllTrips() {
+        return new ArrayList<>(trips.values());
     }
 
-    private List<TripPart> getTripPartsFromSource(String sourceCityId, String date) {
-        return tripPartsFromSourceOnDate.getOrDefault(getTripPartKey(sourceCityId, date), Collections.emptyList());
+    private void refreshSearchRow(Trip trip, List<TripPart> parts) {
+        String operator = busRepository.findById(trip.getBusId()).map(Bus::getOperator).orElse("Unknown");
+        searchRows.put(trip.getTripId(), new TripSearchRow(trip, operator,
+                cityRepository.findById(trip.getSourceCityId()).orElse(null),
+                cityRepository.findById(trip.getDestCityId()).orElse(null),
+                parts));
     }
 
-    private List<TripPart> getTripPartsFromDestination(String destCityId, String date) {
-        return tripPartsFromDestinationOnDate.getOrDefault(getTripPartKey(destCityId, date), Collections.emptyList());
+    // Visits every (source, destination) pair the trip serves: the first part boarding at the source
+    // must not come after the first part alighting at the destination, the same rule as booking uses
+    private void forEachRoute(List<TripPart> parts, BiConsumer<String, RouteEntry> action) {
+        List<TripPart> sorted = parts.stream()
+                .sorted(Comparator.comparingInt(TripPart::getSequence))
+                .toList();
+        Map<String, Integer> firstBoarding = new LinkedHashMap<>();
+        Map<String, Integer> firstAlighting = new LinkedHashMap<>();
+        for (int i = 0; i < sorted.size(); i++) {
+            firstBoarding.putIfAbsent(sorted.get(i).getSourceCityId(), i);
+            firstAlighting.putIfAbsent(sorted.get(i).getDestCityId(), i);
+        }
+        firstBoarding.forEach((sourceCityId, from) -> firstAlighting.forEach((destCityId, to) -> {
+            if (from <= to) {
+                TripPart boarding = sorted.get(from);
+                RouteEntry entry = new RouteEntry(sourceCityId, destCityId, boarding.getDate(),
+                        boarding.getSourceTime(), boarding.getTripId());
+                action.accept(getRouteKey(sourceCityId, destCityId, boarding.getDate()), entry);
+            }
+        }));
     }
 
     private String getRedisCacheKey(String sourceCityId, String destCityId, String date) {
@@ -183,4 +445,26 @@ public class InMemoryInventoryRepository implements InventoryRepository {
     private String getTripPartKey(String cityId, String date) {
         return cityId + "_" + date;
     }
+
+    private String getRouteKey(String sourceCityId, String destCityId, String date) {
+        return sourceCityId + "_" + destCityId + "_" + date;
+    }
+
+    record PartsUpsert(List<TripPart> parts) {
+    }
+
+    record BatchUpsert(List<ScheduledTrip> trips) {
+    }
+
+    record SeatChange(List<String> tripPartIds, int seats) {
+    }
+
+    private record RouteEntry(String sourceCityId, String destCityId, String date,
+                              String departureTime, String tripId) implements Comparable<RouteEntry> {
+        @Override
+        public int compareTo(RouteEntry other) {
+            int byDeparture = departureTime.compareTo(other.departureTime);
+            return byDeparture != 0 ? byDeparture : tripId.compareTo(other.tripId);
+        }
+    }
 }
@@ -1,27 +1,176 @@
 package com.redbus.repository.impl;
 
 import com.redbus.repository.LockRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.function.BooleanSupplier;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Leases kept in a fixed array of stripes, so memory does not grow with the number of keys ever locked. A key
+ * hashes to one stripe and a stripe holds one lease at a time: two keys on the same stripe wait for each other,
+ * which {@code stripes} keeps rare. Waiters park on the stripe until it is released or the lease lapses, and a
+ * lapsed lease is simply overwritten by the next taker.
+ *
+ * <p>Fenced writes are checked against the highest token that has written on the stripe. Tokens only grow and a
+ * stripe holds one lease at a time, so a later token on the stripe means the lease being checked was released or
+ * lapsed, whichever of the stripe's keys the later one was for. Fencing memory is one long per stripe.
+ */
 @Repository
 public class InMemoryLockRepository implements LockRepository {
-    private final Map<String, ReentrantLock> locks = new ConcurrentHashMap<>();
+
+    private final Stripe[] stripes;
+    private final int mask;
+    private final AtomicLong fencingTokens = new AtomicLong();
+
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    public InMemoryLockRepository(@Value("${redbus.lock.stripes:1024}") int stripeCount,
+                                  MeterRegistry meterRegistry) {
+        int size = stripeCount <= 1 ? 1 : Integer.highestOneBit(stripeCount - 1) << 1;
+        this.stripes = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.mask = size - 1;
+        registerMetrics(meterRegistry);
+    }
+
+    @Override
+    public Optional<Lease> tryLock(String key, Duration wait, Duration leaseTime) {
+        Stripe stripe = stripeFor(key);
+        long deadline = System.nanoTime() + wait.toNanos();
+        stripe.mutex.lock();
+        try {
+            while (true) {
+                long now = System.nanoTime();
+                if (stripe.key != null && stripe.expiresAtNanos - now <= 0) {
+                    expirations.increment();
+                    stripe.key = null;
+                }
+                if (stripe.key == null) {
+                    acquired.increment();
+                    return Optional.of(stripe.grant(key, fencingTokens.incrementAndGet(), now, leaseTime));
+                }
+                long remaining = deadline - now;
+                if (remaining <= 0) {
+                    timeouts.increment();
+                    return Optional.empty();
+                }
+                // Wake by the time the current lease lapses even if nobody releases it
+                stripe.released.awaitNanos(Math.min(remaining, stripe.expiresAtNanos - now));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Optional.empty();
+        } finally {
+            stripe.mutex.unlock();
+        }
+    }
+
+    @Override
+    public Optional<Lease> renew(Lease lease, Duration leaseTime) {
+        Stripe stripe = stripeFor(lease.key());
+        stripe.mutex.lock();
+        try {
+            long now = System.nanoTime();
+            if (!stripe.holds(lease, now)) {
+                return Optional.empty();
+            }
+            return Optional.of(stripe.grant(lease.key(), lease.fencingToken(), now, leaseTime));
+        } finally {
+            stripe.mutex.unlock();
+        }
+    }
+
+    @Override
+    public void unlock(Lease lease) {
+        Stripe stripe = stripeFor(lease.key());
+        stripe.mutex.lock();
+        try {
+            if (stripe.holds(lease, System.nanoTime())) {
+                stripe.key = null;
+                stripe.released.signalAll();
+            }
+        } finally {
+            stripe.mutex.unlock();
+        }
+    }
 
     @Override
-    public boolean tryLock(String key) {
-        ReentrantLock lock = locks.computeIfAbsent(key, k -> new ReentrantLock());
-        return lock.tryLock();
+    public boolean isHeld(Lease lease) {
+        Stripe stripe = stripeFor(lease.key());
+        stripe.mutex.lock();
+        try {
+            return stripe.holds(lease, System.nanoTime());
+        } finally {
+            stripe.mutex.unlock();
+        }
     }
 
     @Override
-    public void unlock(String key) {
-        ReentrantLock lock = locks.get(key);
-        if (lock != null && lock.isHeldByCurrentThread()) {
-            lock.unlock();
+    public boolean writeFenced(Lease lease, BooleanSupplier write) {
+        Stripe stripe = stripeFor(lease.key());
+        stripe.mutex.lock();
+        try {
+            if (lease.fencingToken() < stripe.highestWritten) {
+                throw new StaleLeaseException(lease);
+            }
+            if (!write.getAsBoolean()) {
+                return false;
+            }
+            stripe.highestWritten = lease.fencingToken();
+            return true;
+        } finally {
+            stripe.mutex.unlock();
+        }
+    }
+
+    private Stripe stripeFor(String key) {
+        int hash = key.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & mask];
+    }
+
+    private void registerMetrics(MeterRegistry registry) {
+        FunctionCounter.builder("redbus.lock.acquisitions", acquired, LongAdder::sum)
+                .tag("result", "acquired").register(registry);
+        FunctionCounter.builder("redbus.lock.acquisitions", timeouts, LongAdder::sum)
+                .tag("result", "timeout").register(registry);
+        FunctionCounter.builder("redbus.lock.expirations", expirations, LongAdder::sum)
+                .description("Leases taken over after lapsing without being released")
+                .register(registry);
+    }
+
+    // Guarded by its mutex
+    private static final class Stripe {
+        final ReentrantLock mutex = new ReentrantLock();
+        final Condition released = mutex.newCondition();
+        String key;
+        long fencingToken;
+        long expiresAtNanos;
+        // Highest fencing token a successful fenced write on this stripe was made under
+        long highestWritten;
+
+        Lease grant(String key, long fencingToken, long now, Duration leaseTime) {
+            this.key = key;
+            this.fencingToken = fencingToken;
+            this.expiresAtNanos = now + leaseTime.toNanos();
+            return new Lease(key, fencingToken, Instant.now().plus(leaseTime));
+        }
+
+        boolean holds(Lease lease, long now) {
+            return key != null && fencingToken == lease.fencingToken() && expiresAtNanos - now > 0;
         }
     }
 }
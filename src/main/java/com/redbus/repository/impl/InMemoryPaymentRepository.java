@@ -1,50 +1,200 @@
 package com.redbus.repository.impl;
 
+import com.redbus.journal.JournalParticipant;
+import com.redbus.journal.JournalRecordType;
+import com.redbus.journal.MutationJournal;
+import com.redbus.journal.SnapshotInput;
+import com.redbus.journal.SnapshotOutput;
+import com.redbus.journal.SnapshotParticipant;
 import com.redbus.model.Payment;
 import com.redbus.model.PaymentStatus;
 import com.redbus.repository.PaymentRepository;
+import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Repository;
 
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 @Repository
-public class InMemoryPaymentRepository implements PaymentRepository {
+@RequiredArgsConstructor
+public class InMemoryPaymentRepository implements PaymentRepository, JournalParticipant, SnapshotParticipant {
     private final Map<String, Payment> payments = new ConcurrentHashMap<>();
 
+    // Secondary indexes on booking and user, and a unique index of the one successful payment per booking. They
+    // are only changed inside payments.compute for the payment concerned, so they move together with it.
+    private final Map<String, Set<String>> paymentsByBooking = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> paymentsByUser = new ConcurrentHashMap<>();
+    private final Map<String, String> successfulPaymentByBooking = new ConcurrentHashMap<>();
+
+    private final MutationJournal journal;
+
     @Override
     public Optional<Payment> findById(String paymentId) {
         return Optional.ofNullable(payments.get(paymentId));
     }
 
+    // The successful payment of the booking, otherwise its latest attempt
     @Override
     public Optional<Payment> findByBookingId(String bookingId) {
-        return payments.values().stream()
-                .filter(payment -> payment.getBookingId().equals(bookingId))
-                .findFirst();
+        String successful = successfulPaymentByBooking.get(bookingId);
+        if (successful != null) {
+            return findById(successful);
+        }
+        return lookup(paymentsByBooking, bookingId).stream()
+                .max(Comparator.comparing(Payment::getCreatedAt, Comparator.nullsFirst(Comparator.naturalOrder())));
     }
 
     @Override
     public List<Payment> findByUserId(String userId) {
-        return payments.values().stream()
-                .filter(payment -> payment.getUserId().equals(userId))
-                .collect(Collectors.toList());
+        return lookup(paymentsByUser, userId);
     }
 
     @Override
     public void save(Payment payment) {
-        payments.put(payment.getPaymentId(), payment);
+        journal.checkNotFailed();
+        put(payment, true);
+        journal.append(JournalRecordType.PAYMENT_SAVE, payment);
     }
 
     @Override
     public void updateStatus(String paymentId, PaymentStatus status) {
-        Payment payment = payments.get(paymentId);
+        journal.checkNotFailed();
+        Payment payment = applyStatus(paymentId, status, LocalDateTime.now(), true);
         if (payment != null) {
+            journal.append(JournalRecordType.PAYMENT_STATUS,
+                    new StatusChange(paymentId, status, payment.getUpdatedAt()));
+        }
+    }
+
+    private List<Payment> lookup(Map<String, Set<String>> index, String key) {
+        Set<String> paymentIds = index.get(key);
+        if (paymentIds == null) {
+            return List.of();
+        }
+        return paymentIds.stream()
+                .map(payments::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    // Journal replay and snapshot restore pass enforce=false: what was accepted before is taken as it is
+    private void put(Payment payment, boolean enforce) {
+        payments.compute(payment.getPaymentId(), (id, previous) -> {
+            indexStatus(payment, payment.getStatus(), enforce);
+            if (previous != null) {
+                unindex(previous);
+                if (previous.getStatus() == PaymentStatus.SUCCESS && payment.getStatus() != PaymentStatus.SUCCESS) {
+                    successfulPaymentByBooking.remove(previous.getBookingId(), id);
+                }
+            }
+            paymentsByBooking.computeIfAbsent(payment.getBookingId(), key -> ConcurrentHashMap.newKeySet()).add(id);
+            paymentsByUser.computeIfAbsent(payment.getUserId(), key -> ConcurrentHashMap.newKeySet()).add(id);
+            return payment;
+        });
+    }
+
+    private Payment applyStatus(String paymentId, PaymentStatus status, LocalDateTime updatedAt, boolean enforce) {
+        return payments.computeIfPresent(paymentId, (id, payment) -> {
+            indexStatus(payment, status, enforce);
+            if (payment.getStatus() == PaymentStatus.SUCCESS && status != PaymentStatus.SUCCESS) {
+                successfulPaymentByBooking.remove(payment.getBookingId(), id);
+            }
             payment.setStatus(status);
-            payment.setUpdatedAt(java.time.LocalDateTime.now());
+            payment.setUpdatedAt(updatedAt);
+            return payment;
+        });
+    }
+
+    // Claims the booking's successful-payment slot; throws before anything changes if another payment holds it
+    private void indexStatus(Payment payment, PaymentStatus status, boolean enforce) {
+        if (status != PaymentStatus.SUCCESS) {
+            return;
+        }
+        String holder = successfulPaymentByBooking.putIfAbsent(payment.getBookingId(), payment.getPaymentId());
+        if (enforce && holder != null && !holder.equals(payment.getPaymentId())) {
+            throw new IllegalStateException("Booking " + payment.getBookingId() + " already has a successful payment");
+        }
+    }
+
+    // Drops the booking and user entries of a payment that is being replaced, in case either changed
+    private void unindex(Payment payment) {
+        Set<String> byBooking = paymentsByBooking.get(payment.getBookingId());
+        if (byBooking != null) {
+            byBooking.remove(payment.getPaymentId());
+        }
+        Set<String> byUser = paymentsByUser.get(payment.getUserId());
+        if (byUser != null) {
+            byUser.remove(payment.getPaymentId());
         }
     }
+
+    @Override
+    public Set<JournalRecordType> journalRecordTypes() {
+        return EnumSet.of(JournalRecordType.PAYMENT_SAVE, JournalRecordType.PAYMENT_STATUS);
+    }
+
+    @Override
+    public void replay(JournalRecordType type, byte[] payload, MutationJournal journal) {
+        switch (type) {
+            case PAYMENT_SAVE -> put(journal.decode(payload, Payment.class), false);
+            case PAYMENT_STATUS -> {
+                StatusChange change = journal.decode(payload, StatusChange.class);
+                applyStatus(change.paymentId(), change.status(), change.updatedAt(), false);
+            }
+            default -> throw new IllegalArgumentException("Unexpected journal record " + type);
+        }
+    }
+
+    @Override
+    public String snapshotSection() {
+        return "payments";
+    }
+
+    @Override
+    public void writeSnapshot(SnapshotOutput out) throws IOException {
+        List<Payment> snapshot = new ArrayList<>(payments.values());
+        out.writeInt(snapshot.size());
+        for (Payment payment : snapshot) {
+            out.writeUTF(payment.getPaymentId());
+            out.writeUTF(payment.getBookingId());
+            out.writeUTF(payment.getUserId());
+            out.writeLong(payment.getAmountPaise());
+            out.writeEnum(payment.getStatus());
+            out.writeSymbol(payment.getMethod());
+            out.writeDateTime(payment.getCreatedAt());
+            out.writeDateTime(payment.getUpdatedAt());
+        }
+    }
+
+    @Override
+    public void readSnapshot(SnapshotInput in) throws IOException {
+        PaymentStatus[] statuses = PaymentStatus.values();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            Payment payment = Payment.builder()
+                    .paymentId(in.readUTF())
+                    .bookingId(in.readUTF())
+                    .userId(in.readUTF())
+                    .amountPaise(in.readLong())
+                    .status(in.readEnum(statuses))
+                    .method(in.readSymbol())
+                    .createdAt(in.readDateTime())
+                    .updatedAt(in.readDateTime())
+                    .build();
+            put(payment, false);
+        }
+    }
+
+    record StatusChange(String paymentId, PaymentStatus status, LocalDateTime updatedAt) {
+    }
 }
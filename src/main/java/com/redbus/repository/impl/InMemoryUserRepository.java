@@ -1,17 +1,31 @@
 package com.redbus.repository.impl;
 
+import com.redbus.journal.JournalParticipant;
+import com.redbus.journal.JournalRecordType;
+import com.redbus.journal.MutationJournal;
+import com.redbus.journal.SnapshotInput;
+import com.redbus.journal.SnapshotOutput;
+import com.redbus.journal.SnapshotParticipant;
 import com.redbus.model.User;
 import com.redbus.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Repository;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 @Repository
-public class InMemoryUserRepository implements UserRepository {
+@RequiredArgsConstructor
+public class InMemoryUserRepository implements UserRepository, JournalParticipant, SnapshotParticipant {
     private final Map<String, User> users = new ConcurrentHashMap<>();
     private final Map<String, User> usersByEmail = new ConcurrentHashMap<>();
+    private final MutationJournal journal;
 
     @Override
     public Optional<User> findById(String userId) {
@@ -25,6 +39,52 @@ public class InMemoryUserRepository implements UserRepository {
 
     @Override
     public void save(User user) {
+        journal.checkNotFailed();
+        index(user);
+        journal.append(JournalRecordType.USER_SAVE, user);
+    }
+
+    @Override
+    public Set<JournalRecordType> journalRecordTypes() {
+        return EnumSet.of(JournalRecordType.USER_SAVE);
+    }
+
+    @Override
+    public void replay(JournalRecordType type, byte[] payload, MutationJournal journal) {
+        index(journal.decode(payload, User.class));
+    }
+
+    @Override
+    public String snapshotSection() {
+        return "users";
+    }
+
+    @Override
+    public void writeSnapshot(SnapshotOutput out) throws IOException {
+        List<User> snapshot = new ArrayList<>(users.values());
+        out.writeInt(snapshot.size());
+        for (User user : snapshot) {
+            out.writeUTF(user.getUserId());
+            out.writeUTF(user.getEmail());
+            out.writeNullableUTF(user.getPasswordHash());
+            out.writeDateTime(user.getCreatedAt());
+        }
+    }
+
+    @Override
+    public void readSnapshot(SnapshotInput in) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            index(User.builder()
+                    .userId(in.readUTF())
+                    .email(in.readUTF())
+                    .passwordHash(in.readNullableUTF())
+                    .createdAt(in.readDateTime())
+                    .build());
+        }
+    }
+
+    private void index(User user) {
         users.put(user.getUserId(), user);
         usersByEmail.put(user.getEmail().toLowerCase(), user);
     }
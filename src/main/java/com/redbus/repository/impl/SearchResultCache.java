@@ -0,0 +1,216 @@
+package com.redbus.repository.impl;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded cache of search results (trip ids per source, destination and date), standing in for Redis.
+ * Keys are spread over segments that each keep an access-ordered LRU, so eviction only locks one segment.
+ * Empty results are cached as negative entries with their own, shorter TTL.
+ *
+ * <p>Invalidations bump a generation counter for the key's stripe. A result computed by a search that started
+ * before an invalidation is refused by {@link #putIfNotInvalidated}, so it cannot hide the trip that caused the
+ * invalidation for a whole TTL. Keys sharing a stripe only cost each other a cache fill.
+ */
+@Component
+public class SearchResultCache {
+
+    private static final int SEGMENTS = 16;
+    private static final int GENERATION_STRIPES = 64;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder sizeEvictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    public SearchResultCache(@Value("${redbus.search-cache.max-entries:100000}") int maxEntries,
+                             @Value("${redbus.search-cache.ttl:5m}") Duration ttl,
+                             @Value("${redbus.search-cache.negative-ttl:30s}") Duration negativeTtl,
+                             MeterRegistry meterRegistry) {
+        int segmentCapacity = Math.max(1, maxEntries / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+        this.ttlNanos = ttl.toNanos();
+        this.negativeTtlNanos = negativeTtl.toNanos();
+        registerMetrics(meterRegistry);
+    }
+
+    /**
+     * Returns the cached trip ids, an empty list for a cached negative result, or empty when the key is not cached.
+     */
+    public Optional<List<String>> get(String key) {
+        CacheEntry entry = segmentFor(key).get(key, System.nanoTime());
+        if (entry == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        if (entry.tripIds().isEmpty()) {
+            negativeHits.increment();
+        } else {
+            hits.increment();
+        }
+        return Optional.of(entry.tripIds());
+    }
+
+    public void put(String key, List<String> tripIds) {
+        long ttl = tripIds.isEmpty() ? negativeTtlNanos : ttlNanos;
+        segmentFor(key).put(key, new CacheEntry(List.copyOf(tripIds), System.nanoTime() + ttl));
+    }
+
+    /**
+     * Current invalidation generation of the key, to be read before computing the result to cache.
+     */
+    public long generation(String key) {
+        return segmentFor(key).generation(key);
+    }
+
+    /**
+     * Caches the result unless the key was invalidated since {@code generation} was read; false if refused.
+     */
+    public boolean putIfNotInvalidated(String key, List<String> tripIds, long generation) {
+        long ttl = tripIds.isEmpty() ? negativeTtlNanos : ttlNanos;
+        return segmentFor(key).putIf(key, new CacheEntry(List.copyOf(tripIds), System.nanoTime() + ttl), generation);
+    }
+
+    public void invalidate(String key) {
+        segmentFor(key).remove(key);
+    }
+
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    private Segment segmentFor(String key) {
+        int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    private void registerMetrics(MeterRegistry registry) {
+        FunctionCounter.builder("redbus.search.cache.requests", hits, LongAdder::sum)
+                .tag("result", "hit").register(registry);
+        FunctionCounter.builder("redbus.search.cache.requests", negativeHits, LongAdder::sum)
+                .tag("result", "negative_hit").register(registry);
+        FunctionCounter.builder("redbus.search.cache.requests", misses, LongAdder::sum)
+                .tag("result", "miss").register(registry);
+        FunctionCounter.builder("redbus.search.cache.evictions", sizeEvictions, LongAdder::sum)
+                .tag("cause", "size").register(registry);
+        FunctionCounter.builder("redbus.search.cache.evictions", expirations, LongAdder::sum)
+                .tag("cause", "expired").register(registry);
+        Gauge.builder("redbus.search.cache.size", this, SearchResultCache::size).register(registry);
+    }
+
+    private record CacheEntry(List<String> tripIds, long expiresAtNanos) {
+    }
+
+    private final class Segment {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LinkedHashMap<String, CacheEntry> entries;
+        // Guarded by lock; bumped by every invalidation of a key in the stripe
+        private final long[] generations = new long[GENERATION_STRIPES];
+
+        private Segment(int capacity) {
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                    if (size() > capacity) {
+                        sizeEvictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        private CacheEntry get(String key, long now) {
+            lock.lock();
+            try {
+                CacheEntry entry = entries.get(key);
+                if (entry != null && entry.expiresAtNanos() - now <= 0) {
+                    entries.remove(key);
+                    expirations.increment();
+                    return null;
+                }
+                return entry;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void put(String key, CacheEntry entry) {
+            lock.lock();
+            try {
+                entries.put(key, entry);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private long generation(String key) {
+            lock.lock();
+            try {
+                return generations[stripe(key)];
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private boolean putIf(String key, CacheEntry entry, long generation) {
+            lock.lock();
+            try {
+                if (generations[stripe(key)] != generation) {
+                    return false;
+                }
+                entries.put(key, entry);
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void remove(String key) {
+            lock.lock();
+            try {
+                entries.remove(key);
+                generations[stripe(key)]++;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Segments are picked by the low hash bits, so stripes within one use the bits above them
+        private int stripe(String key) {
+            int hash = key.hashCode();
+            return ((hash ^ (hash >>> 16)) >>> 4) & (GENERATION_STRIPES - 1);
+        }
+
+        private int size() {
+            lock.lock();
+            try {
+                return entries.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
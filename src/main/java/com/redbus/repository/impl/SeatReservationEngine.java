@@ -0,0 +1,136 @@
+package com.redbus.repository.impl;
+
+import com.redbus.model.TripPart;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free seat counters for trip parts. A booking reserves a run of parts all-or-nothing:
+ * each counter is decremented with a CAS, and the counters already taken are handed back
+ * as soon as one part turns out to be short of seats.
+ */
+public class SeatReservationEngine {
+
+    private final Map<String, SeatCounter> counters = new ConcurrentHashMap<>();
+
+    // A part registered again takes over the previous counter's AtomicInteger, shifted by the change in capacity,
+    // so takes and gives still landing on the previous counter are not lost and sold seats stay sold
+    public void register(TripPart part) {
+        counters.compute(part.getTripPartId(), (id, previous) -> {
+            if (previous == null) {
+                return new SeatCounter(part, new AtomicInteger(part.getAvailableSeats()));
+            }
+            int capacityChange = part.getCapacity() - previous.part.getCapacity();
+            int current;
+            do {
+                current = previous.available.get();
+                if (current + capacityChange < 0) {
+                    throw new IllegalArgumentException("Capacity " + part.getCapacity() + " of trip part " + id
+                            + " is below the " + (previous.part.getCapacity() - current) + " seats held on it");
+                }
+            } while (!previous.available.compareAndSet(current, current + capacityChange));
+            SeatCounter counter = new SeatCounter(part, previous.available);
+            counter.publish();
+            return counter;
+        });
+    }
+
+    // Seats currently reserved or sold on the part, 0 if it is not registered
+    public int held(String tripPartId) {
+        SeatCounter counter = counters.get(tripPartId);
+        return counter != null ? counter.part.getCapacity() - counter.available.get() : 0;
+    }
+
+    // Only drops the counter if it still belongs to this part, so a re-registered id is kept
+    public void unregister(TripPart part) {
+        counters.computeIfPresent(part.getTripPartId(), (id, counter) -> counter.part == part ? null : counter);
+    }
+
+    public boolean reserve(List<String> tripPartIds, int seats) {
+        SeatCounter[] taken = new SeatCounter[tripPartIds.size()];
+        for (int i = 0; i < taken.length; i++) {
+            SeatCounter counter = counters.get(tripPartIds.get(i));
+            if (counter == null || !counter.tryTake(seats)) {
+                // Roll back the parts reserved so far
+                for (int j = 0; j < i; j++) {
+                    taken[j].give(seats);
+                }
+                return false;
+            }
+            taken[i] = counter;
+        }
+        return true;
+    }
+
+    public void release(List<String> tripPartIds, int seats) {
+        for (String tripPartId : tripPartIds) {
+            SeatCounter counter = counters.get(tripPartId);
+            if (counter != null) {
+                counter.give(seats);
+            }
+        }
+    }
+
+    // Unconditional change, used to re-apply journaled reservations and releases
+    public void adjust(List<String> tripPartIds, int delta) {
+        for (String tripPartId : tripPartIds) {
+            SeatCounter counter = counters.get(tripPartId);
+            if (counter != null) {
+                counter.give(delta);
+            }
+        }
+    }
+
+    public void reset(String tripPartId, int available) {
+        SeatCounter counter = counters.get(tripPartId);
+        if (counter != null) {
+            counter.available.set(available);
+            counter.publish();
+        }
+    }
+
+    public int available(String tripPartId) {
+        SeatCounter counter = counters.get(tripPartId);
+        return counter != null ? counter.available.get() : 0;
+    }
+
+    private static final class SeatCounter {
+        private final TripPart part;
+        private final AtomicInteger available;
+
+        private SeatCounter(TripPart part, AtomicInteger available) {
+            this.part = part;
+            this.available = available;
+        }
+
+        private boolean tryTake(int seats) {
+            int current;
+            do {
+                current = available.get();
+                if (current < seats) {
+                    return false;
+                }
+            } while (!available.compareAndSet(current, current - seats));
+            publish();
+            return true;
+        }
+
+        private void give(int seats) {
+            available.addAndGet(seats);
+            publish();
+        }
+
+        // Mirror the counter onto TripPart.availableSeats for readers. Whoever changes the counter
+        // keeps writing until the field matches it, so racing publishers cannot leave a stale value.
+        private void publish() {
+            int value;
+            do {
+                value = available.get();
+                part.setAvailableSeats(value);
+            } while (available.get() != value);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.redbus.service;
 
 import com.redbus.dto.CreateTripRequest;
 import com.redbus.dto.TripView;
+import com.redbus.model.ScheduledTrip;
 import com.redbus.model.Trip;
 import com.redbus.model.TripPart;
 import com.redbus.model.PricingType;
@@ -27,17 +28,39 @@ public class AdminService {
     private final CityRepository cityRepository;
     
     public List<Trip> createTrip(CreateTripRequest request) {
-        List<Trip> createdTrips = new ArrayList<>();
+        List<ScheduledTrip> batch = new ArrayList<>();
         
         // Determine the dates to create trips for
         List<LocalDate> dates = getDatesForRepeat(request.getDate(), request.getRepeatOption());
         
         for (LocalDate date : dates) {
-            Trip trip = createSingleTrip(request, date);
-            createdTrips.add(trip);
+            batch.add(buildScheduledTrip(request, date));
         }
         
-        return createdTrips;
+        // All repeats go in as one batch, so shared routes are invalidated once
+        inventoryRepository.upsertBatch(batch);
+        log.info("Created {} trips for route {} -> {} from {}", batch.size(),
+                request.getSourceCityId(), request.getDestCityId(), request.getDate());
+        
+        return batch.stream().map(ScheduledTrip::trip).toList();
+    }
+    
+    /**
+     * Bulk ingest of many trip templates, each expanded over its repeat option. Trips and parts are built in
+     * parallel and applied to the inventory as a single batch.
+     */
+    public List<Trip> bulkCreateTrips(List<CreateTripRequest> requests) {
+        long start = System.nanoTime();
+        List<ScheduledTrip> batch = requests.parallelStream()
+                .flatMap(request -> getDatesForRepeat(request.getDate(), request.getRepeatOption()).stream()
+                        .map(date -> buildScheduledTrip(request, date)))
+                .toList();
+        
+        inventoryRepository.upsertBatch(batch);
+        log.info("Bulk created {} trips from {} templates in {} ms", batch.size(), requests.size(),
+                (System.nanoTime() - start) / 1_000_000);
+        
+        return batch.stream().map(ScheduledTrip::trip).toList();
     }
     
     private List<LocalDate> getDatesForRepeat(LocalDate startDate, String repeatOption) {
@@ -64,7 +87,7 @@ public class AdminService {
         return dates;
     }
     
-    private Trip createSingleTrip(CreateTripRequest request, LocalDate date) {
+    private ScheduledTrip buildScheduledTrip(CreateTripRequest request, LocalDate date) {
         // Create the main trip
         Trip trip = Trip.builder()
                 .tripId(UUID.randomUUID().toString())
@@ -77,15 +100,7 @@ public class AdminService {
                 .build();
         
         // Create trip parts for the route
-        List<TripPart> tripParts = createTripParts(trip, request);
-        
-        // Save trip and trip parts to repository
-        inventoryRepository.upsertTrip(trip);
-        inventoryRepository.upsertParts(tripParts);
-        
-        log.info("Created trip {} with {} parts for date {}", trip.getTripId(), tripParts.size(), date);
-        
-        return trip;
+        return new ScheduledTrip(trip, createTripParts(trip, request));
     }
     
     private List<TripPart> createTripParts(Trip trip, CreateTripRequest request) {
@@ -2,10 +2,11 @@ package com.redbus.service;
 
 import com.redbus.model.User;
 import com.redbus.repository.UserRepository;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
@@ -18,14 +19,21 @@ import java.util.UUID;
 @Service
 public class AuthService {
     private final UserRepository userRepository;
-    private final BCryptPasswordEncoder passwordEncoder;
+    private final PasswordHasher passwordHasher;
     private final SecretKey secretKey;
+    // Immutable and thread-safe, so built once rather than per token
+    private final JwtParser jwtParser;
+    private final VerifiedTokenCache verifiedTokens;
 
     public AuthService(UserRepository userRepository,
-                      @Value("${jwt.secret}") String jwtSecret) {
+                      @Value("${jwt.secret}") String jwtSecret,
+                      @Value("${redbus.auth.token-cache.max-entries:100000}") int tokenCacheEntries,
+                      PasswordHasher passwordHasher) {
         this.userRepository = userRepository;
-        this.passwordEncoder = new BCryptPasswordEncoder();
+        this.passwordHasher = passwordHasher;
         this.secretKey = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+        this.jwtParser = Jwts.parser().verifyWith(secretKey).build();
+        this.verifiedTokens = new VerifiedTokenCache(tokenCacheEntries);
     }
 
     public String signup(String email, String password) {
@@ -36,7 +44,7 @@ public class AuthService {
         User user = User.builder()
                 .userId(UUID.randomUUID().toString())
                 .email(email)
-                .passwordHash(passwordEncoder.encode(password))
+                .passwordHash(passwordHasher.encode(password))
                 .createdAt(LocalDateTime.now())
                 .build();
 
@@ -48,27 +56,32 @@ public class AuthService {
         Optional<User> userOpt = userRepository.findByEmail(email);
 
         if (userOpt.isEmpty()) {
-            System.out.println("User not found");
             throw new IllegalArgumentException("Invalid credentials");
         }
         User user = userOpt.get();
 
-        System.out.println("User found: " + user);
-        String passwordHash = passwordEncoder.encode(password);
-        System.out.println("Password hash: " + user.getPasswordHash());
-        System.out.println("Password: " + password);
-        System.out.println("Password hash2: " + passwordHash);
-        System.out.println("Password matches: " + passwordEncoder.matches(password, user.getPasswordHash()));
-
-
-        if (!passwordEncoder.matches(password, user.getPasswordHash())) {
+        if (!passwordHasher.matches(password, user.getPasswordHash())) {
             throw new IllegalArgumentException("Invalid credentials");
         }
-        System.out.println("Password matches");
+        if (passwordHasher.needsRehash(user.getPasswordHash())) {
+            rehash(user, password);
+        }
 
         return generateToken(user.getUserId());
     }
 
+    // Replaces a hash made with a different cost; done in the background and tried again at the next login
+    // if the pool is busy now
+    private void rehash(User user, String password) {
+        String previousHash = user.getPasswordHash();
+        passwordHasher.encodeLater(password, newHash -> {
+            if (previousHash.equals(user.getPasswordHash())) {
+                user.setPasswordHash(newHash);
+                userRepository.save(user);
+            }
+        });
+    }
+
     public boolean auth(String authToken, String userId) {
         if (authToken == null || userId == null) {
             return false;
@@ -77,23 +90,27 @@ public class AuthService {
         return extractedUserId.equals(userId);
     }
 
+    // No console output on this path: it runs on every authenticated request, and PrintStream writes under a
+    // monitor, which pins a virtual thread to its carrier for the duration of the blocking write
     public String extractUserId(String authHeader) {
-        System.out.println("extractUserId:AuthHeader: " + authHeader);
         String token = authHeader.substring(7); // Remove "Bearer " prefix
         return extractUserIdFromToken(token);
     }
 
+    // A token seen before is a hash lookup; only the first sighting verifies the signature
     public String extractUserIdFromToken(String token) {
-        System.out.println("extractUserIdFromToken:Token: " + token);
+        String cached = verifiedTokens.get(token);
+        if (cached != null) {
+            return cached;
+        }
         try {
-            return Jwts.parser()
-                    .verifyWith(secretKey)
-                    .build()
-                    .parseSignedClaims(token)
-                    .getPayload()
-                    .getSubject();
+            Claims claims = jwtParser.parseSignedClaims(token).getPayload();
+            String userId = claims.getSubject();
+            if (userId != null && claims.getExpiration() != null) {
+                verifiedTokens.put(token, userId, claims.getExpiration().getTime());
+            }
+            return userId;
         } catch (Exception e) {
-            System.out.println("extractUserIdFromToken:Invalid token");
             throw new IllegalArgumentException("Invalid token");
         }
     }
@@ -1,41 +1,193 @@
 package com.redbus.service;
 
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
+import com.redbus.util.Digest;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
+/**
+ * Runs an operation at most once per idempotency key. The first request with a key claims it with an in-flight
+ * future before running the operation; a duplicate that arrives meanwhile waits for that future and gets the same
+ * result, and later duplicates get the stored result until it expires. A key reused with a different payload is
+ * refused with {@link KeyReuseException}. If the operation fails the key is released, so a retry runs it again.
+ *
+ * <p>Keys and payloads are kept as SHA-256 digests, and memory is bounded by {@code max-entries}: results share
+ * one TTL, so insertion order is expiry order and the entry closest to expiry is the one evicted. An entry whose
+ * operation is still running is never evicted, or a duplicate would run it again. One caller at a time sweeps the
+ * expiry queue; the others skip the sweep rather than wait for it.
+ */
 @Service
 public class IdempotencyStore {
-    private final Map<String, StoredResult> store = new ConcurrentHashMap<>();
 
-    public void storeResult(String key, Object result, LocalDateTime expiresAt) {
-        store.put(key, new StoredResult(result, expiresAt));
+    private final Map<Digest, Entry> entries = new ConcurrentHashMap<>();
+    // Added to by any caller, but only polled by the sweeper holding sweepLock
+    private final Queue<Entry> expiryOrder = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock sweepLock = new ReentrantLock();
+    private final int maxEntries;
+    private final long ttlNanos;
+
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder inFlightWaits = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder sizeEvictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    public IdempotencyStore(@Value("${redbus.idempotency.max-entries:100000}") int maxEntries,
+                            @Value("${redbus.idempotency.ttl:24h}") Duration ttl,
+                            MeterRegistry meterRegistry) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        registerMetrics(meterRegistry);
     }
 
-    public Object getResult(String key) {
-        StoredResult stored = store.get(key);
-        if (stored == null || stored.getExpiresAt().isBefore(LocalDateTime.now())) {
-            store.remove(key);
-            return null;
+    /**
+     * Runs the operation for the first request with this key, or returns the result of the one that did. The key is
+     * scoped to the operation and the user; the payload is what the key must keep meaning.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String operation, String userId, String idempotencyKey, List<?> payload, Supplier<T> action) {
+        Digest key = Digest.sha256(List.of(operation, userId, idempotencyKey));
+        Digest payloadDigest = Digest.sha256(payload);
+        long now = System.nanoTime();
+        removeExpired(now);
+
+        Entry claim = new Entry(key, payloadDigest, new CompletableFuture<>(), now + ttlNanos);
+        Entry existing = entries.putIfAbsent(key, claim);
+        if (existing != null && existing.expiresAtNanos() - now <= 0) {
+            // Expired but not swept yet: take its place
+            existing = entries.replace(key, existing, claim) ? null : entries.putIfAbsent(key, claim);
+        }
+        if (existing != null) {
+            if (!existing.payload().equals(payloadDigest)) {
+                conflicts.increment();
+                throw new KeyReuseException("Idempotency-Key was already used with a different request");
+            }
+            if (existing.result().isDone()) {
+                hits.increment();
+            } else {
+                inFlightWaits.increment();
+            }
+            return (T) await(existing.result());
+        }
+
+        executions.increment();
+        expiryOrder.add(claim);
+        evictOverBudget();
+        try {
+            T result = action.get();
+            claim.result().complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            // Its queue entry stays until the sweeper reaches it and finds the key no longer maps to it
+            entries.remove(key, claim);
+            claim.result().completeExceptionally(e);
+            throw e;
         }
-        return stored.getResult();
     }
 
     public void removeExpired() {
-        LocalDateTime now = LocalDateTime.now();
-        store.entrySet().removeIf(entry -> entry.getValue().getExpiresAt().isBefore(now));
+        removeExpired(System.nanoTime());
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void removeExpired(long now) {
+        if (!sweepLock.tryLock()) {
+            return;
+        }
+        try {
+            Entry head;
+            while ((head = expiryOrder.peek()) != null && head.expiresAtNanos() - now <= 0) {
+                expiryOrder.poll();
+                if (entries.remove(head.key(), head)) {
+                    expirations.increment();
+                }
+            }
+        } finally {
+            sweepLock.unlock();
+        }
+    }
+
+    // Entries replaced after expiring or released after a failure are still queued; they are dropped here without
+    // counting as evictions. Entries still in flight are queued again behind the rest, and the pass ends once every
+    // entry left has been looked at.
+    private void evictOverBudget() {
+        if (entries.size() <= maxEntries || !sweepLock.tryLock()) {
+            return;
+        }
+        try {
+            List<Entry> inFlight = new ArrayList<>();
+            while (entries.size() > maxEntries) {
+                Entry head = expiryOrder.poll();
+                if (head == null) {
+                    break;
+                }
+                if (!head.result().isDone() && entries.get(head.key()) == head) {
+                    inFlight.add(head);
+                } else if (entries.remove(head.key(), head)) {
+                    sizeEvictions.increment();
+                }
+            }
+            expiryOrder.addAll(inFlight);
+        } finally {
+            sweepLock.unlock();
+        }
+    }
+
+    private Object await(CompletableFuture<Object> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void registerMetrics(MeterRegistry registry) {
+        FunctionCounter.builder("redbus.idempotency.requests", executions, LongAdder::sum)
+                .tag("result", "executed").register(registry);
+        FunctionCounter.builder("redbus.idempotency.requests", hits, LongAdder::sum)
+                .tag("result", "hit").register(registry);
+        FunctionCounter.builder("redbus.idempotency.requests", inFlightWaits, LongAdder::sum)
+                .tag("result", "in_flight").register(registry);
+        FunctionCounter.builder("redbus.idempotency.requests", conflicts, LongAdder::sum)
+                .tag("result", "conflict").register(registry);
+        FunctionCounter.builder("redbus.idempotency.evictions", sizeEvictions, LongAdder::sum)
+                .tag("cause", "size").register(registry);
+        FunctionCounter.builder("redbus.idempotency.evictions", expirations, LongAdder::sum)
+                .tag("cause", "expired").register(registry);
+        Gauge.builder("redbus.idempotency.size", this, IdempotencyStore::size).register(registry);
+    }
+
+    /**
+     * The idempotency key was first used for a request with a different payload.
+     */
+    public static class KeyReuseException extends IllegalStateException {
+        public KeyReuseException(String message) {
+            super(message);
+        }
     }
 
-    @Data
-    @NoArgsConstructor
-    @AllArgsConstructor
-    public static class StoredResult {
-        private Object result;
-        private LocalDateTime expiresAt;
+    private record Entry(Digest key, Digest payload, CompletableFuture<Object> result, long expiresAtNanos) {
     }
 }
@@ -1,41 +1,79 @@
 package com.redbus.service;
 
+import com.redbus.dto.ItineraryResponseItem;
+import com.redbus.dto.RangeSearchResponse;
+import com.redbus.dto.SearchPage;
 import com.redbus.dto.SearchResponseItem;
-import com.redbus.model.Bus;
 import com.redbus.model.City;
+import com.redbus.model.SearchSort;
 import com.redbus.model.Trip;
 import com.redbus.model.TripPart;
+import com.redbus.model.TripSearchRow;
 import com.redbus.pricing.PricingService;
-import com.redbus.repository.BusRepository;
 import com.redbus.repository.CityRepository;
 import com.redbus.repository.InventoryRepository;
+import com.redbus.util.SingleFlight;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 @Service
 @RequiredArgsConstructor
 public class InventoryService {
+    public static final int MAX_RANGE_DAYS = 31;
+    private static final int MAX_ITINERARIES = 50;
+    private static final int MINUTES_PER_DAY = 24 * 60;
+    private static final Comparator<PageCandidate> PAGE_ORDER =
+            Comparator.comparingLong(PageCandidate::sortKey).thenComparing(PageCandidate::tripId);
+
     private final InventoryRepository inventoryRepository;
     private final CityRepository cityRepository;
-    private final BusRepository busRepository;
     private final PricingService pricingService;
+    private final SingleFlight<String, List<String>> searchMisses = new SingleFlight<>();
 
     public List<Trip> searchTrips(String sourceCityId, String destCityId, String date) {
-        // First check Redis cache
-        List<String> tripIds = inventoryRepository.getTripIdsFromRedis(sourceCityId, destCityId, date);
+        return inventoryRepository.findTripsByIds(findTripIds(sourceCityId, destCityId, date));
+    }
+
+    private List<String> findTripIds(String sourceCityId, String destCityId, String date) {
+        // First check Redis cache; an empty cached list means the route is known to have no trips
+        Optional<List<String>> cachedTripIds = inventoryRepository.getTripIdsFromRedis(sourceCityId, destCityId, date);
+
+        List<String> tripIds;
+        if (cachedTripIds.isPresent()) {
+            tripIds = cachedTripIds.get();
+        } else {
+            // Cache miss - concurrent misses on the same route share a single computation
+            tripIds = searchMisses.execute(sourceCityId + "_" + destCityId + "_" + date,
+                    () -> loadTripIds(sourceCityId, destCityId, date));
+        }
+        return tripIds;
+    }
 
-        if (tripIds.isEmpty()) {
-            // Index miss - compute from all trips and populate index
-            // First, get all trips for the date
-            tripIds = inventoryRepository.searchTrips(sourceCityId, destCityId, date);
+    private List<String> loadTripIds(String sourceCityId, String destCityId, String date) {
+        // Read before searching: if the route is invalidated while we search, our result may miss the trip that
+        // caused it and is not cached
+        long generation = inventoryRepository.getTripIdsGenerationInRedis(sourceCityId, destCityId, date);
 
-            // Cache the result in Redis
-            inventoryRepository.setTripIdsInRedis(sourceCityId, destCityId, date, tripIds);
+        // A previous leader may have populated the cache between our miss and taking the lead
+        Optional<List<String>> cachedTripIds = inventoryRepository.getTripIdsFromRedis(sourceCityId, destCityId, date);
+        if (cachedTripIds.isPresent()) {
+            return cachedTripIds.get();
         }
 
-        return inventoryRepository.findTripsByIds(tripIds);
+        // Resolve from the route index and cache the result in Redis
+        List<String> tripIds = inventoryRepository.searchTrips(sourceCityId, destCityId, date);
+        inventoryRepository.setTripIdsInRedisIfNotInvalidated(sourceCityId, destCityId, date, tripIds, generation);
+        return tripIds;
     }
 
     public List<TripPart> getTripParts(String tripId) {
@@ -47,9 +85,7 @@ public class InventoryService {
     }
 
     public int getAvailableSeats(String tripId, String sourceCityId, String destCityId) {
-        List<TripPart> matchingParts = findSegmentsForRoute(tripId, sourceCityId, destCityId);
-        System.out.println("Get Available Seats: Matching Parts: " + matchingParts);
-        return getAvailableSeats(matchingParts);
+        return getAvailableSeats(findSegmentsForRoute(tripId, sourceCityId, destCityId));
     }
 
     public int getTotalCapacity(List<TripPart> parts) {
@@ -65,82 +101,315 @@ public class InventoryService {
     }
 
     public List<TripPart> findSegmentsForRoute(String tripId, String sourceCityId, String destCityId) {
+        return inventoryRepository.findSearchRow(tripId)
+                .map(row -> row.segments(row.boardingIndex(sourceCityId), row.alightingIndex(destCityId)))
+                .orElse(Collections.emptyList());
+    }
 
-        List<TripPart> allParts = getTripParts(tripId);
+    public List<SearchResponseItem> search(String sourceCityId, String destCityId, String date) {
+        List<String> tripIds = findTripIds(sourceCityId, destCityId, date);
 
-        // First check for direct segment
-        TripPart sourcePart = allParts.stream()
-                .filter(part -> part.getSourceCityId().equals(sourceCityId))
-                .findFirst()
-                .orElse(null);
-        TripPart destPart = allParts.stream()
-                .filter(part -> part.getDestCityId().equals(destCityId))
-                .findFirst()
-                .orElse(null);
-        if (sourcePart != null && destPart != null) {
-            return allParts.stream()
-                .filter(part -> part.getSequence() >= sourcePart.getSequence() && part.getSequence() <= destPart.getSequence())
-                .sorted(Comparator.comparingInt(TripPart::getSequence))
-                .toList();
+        // City names are the same for every row, resolve them once
+        String sourceName = getCityName(sourceCityId);
+        String destName = getCityName(destCityId);
+
+        List<SearchResponseItem> items = new ArrayList<>(tripIds.size());
+        for (String tripId : tripIds) {
+            inventoryRepository.findSearchRow(tripId).ifPresent(row ->
+                    items.add(createSearchResponseItem(row, sourceCityId, destCityId, sourceName, destName)));
         }
-        return Collections.emptyList();
+        return items;
     }
 
-    public List<SearchResponseItem> search(String sourceCityId, String destCityId, String date) {
-        System.out.println("Search: Source City ID: " + sourceCityId);
-        System.out.println("Search: Dest City ID: " + destCityId);
-        System.out.println("Search: Date: " + date);
-        System.out.println("Search: Inventory Repository: " + inventoryRepository.findAllTrips());
-        List<Trip> trips = searchTrips(sourceCityId, destCityId, date);
+    // One page of results in the requested order. A bounded heap keeps the best limit + 1 rows while
+    // scanning, so only the rows on the page are enriched; the extra row tells whether a next page exists.
+    public SearchPage searchPage(String sourceCityId, String destCityId, String date,
+                                 SearchSort sort, int limit, String cursor) {
+        PageCandidate after = cursor != null ? decodeCursor(cursor, sort) : null;
+
+        PriorityQueue<PageCandidate> best = new PriorityQueue<>(limit + 2, PAGE_ORDER.reversed());
+        for (String tripId : findTripIds(sourceCityId, destCityId, date)) {
+            TripSearchRow row = inventoryRepository.findSearchRow(tripId).orElse(null);
+            if (row == null) {
+                continue;
+            }
+            int from = row.boardingIndex(sourceCityId);
+            int to = row.alightingIndex(destCityId);
+            if (from < 0 || to < from) {
+                continue;
+            }
+
+            PageCandidate candidate = new PageCandidate(row, tripId, sortKey(row, from, to, sort));
+            if (after != null && PAGE_ORDER.compare(candidate, after) <= 0) {
+                continue;
+            }
+            best.offer(candidate);
+            if (best.size() > limit + 1) {
+                best.poll();
+            }
+        }
+
+        List<PageCandidate> page = new ArrayList<>(best);
+        page.sort(PAGE_ORDER);
+        String nextCursor = null;
+        if (page.size() > limit) {
+            page = page.subList(0, limit);
+            nextCursor = encodeCursor(page.get(limit - 1), sort);
+        }
+
+        String sourceName = getCityName(sourceCityId);
+        String destName = getCityName(destCityId);
+        List<SearchResponseItem> items = new ArrayList<>(page.size());
+        for (PageCandidate candidate : page) {
+            items.add(createSearchResponseItem(candidate.row(), sourceCityId, destCityId, sourceName, destName));
+        }
+        return new SearchPage(items, nextCursor);
+    }
+
+    private long sortKey(TripSearchRow row, int from, int to, SearchSort sort) {
+        return switch (sort) {
+            case PRICE -> estimatePrice(row, from, to, row.availableSeats(from, to));
+            case DEPARTURE -> row.departureMinute(from);
+            case DURATION -> row.durationMinutes(from, to);
+            case SEATS -> -row.availableSeats(from, to); // most seats first
+        };
+    }
+
+    // Cursor is the sort key and trip id of the last row on the page: "<sort>:<key>:<tripId>", base64url encoded
+    private String encodeCursor(PageCandidate last, SearchSort sort) {
+        String raw = sort.name() + ":" + last.sortKey() + ":" + last.tripId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
 
-        System.out.println("Search: Trips: " + trips);
-        return trips.stream()
-                .map(trip -> createSearchResponseItem(trip, sourceCityId, destCityId))
-                .toList();
+    private PageCandidate decodeCursor(String cursor, SearchSort sort) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] fields = raw.split(":", 3);
+            if (fields.length != 3 || !fields[0].equals(sort.name())) {
+                throw new IllegalArgumentException("Cursor does not belong to this sort order");
+            }
+            return new PageCandidate(null, fields[2], Long.parseLong(fields[1]));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    private record PageCandidate(TripSearchRow row, String tripId, long sortKey) {
+    }
+
+    // One-transfer itineraries: a trip from the source to a transfer city, then a different trip on to the
+    // destination that leaves within the layover window (possibly the next day). Transfer cities come from
+    // the transfer graph, and each leg is a route lookup that is already ordered by departure.
+    public List<ItineraryResponseItem> searchConnecting(String sourceCityId, String destCityId, String date,
+                                                        int minLayoverMinutes, int maxLayoverMinutes) {
+        if (minLayoverMinutes < 0 || maxLayoverMinutes < minLayoverMinutes || maxLayoverMinutes > MINUTES_PER_DAY) {
+            throw new IllegalArgumentException("Invalid layover window");
+        }
+        String nextDate;
+        try {
+            nextDate = LocalDate.parse(date).plusDays(1).toString();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid date: " + date, e);
+        }
+
+        List<Connection> connections = new ArrayList<>();
+        for (String transferCityId : inventoryRepository.findReachableCities(sourceCityId, date)) {
+            if (transferCityId.equals(destCityId) || transferCityId.equals(sourceCityId)) {
+                continue;
+            }
+            boolean sameDay = inventoryRepository.findReachableCities(transferCityId, date).contains(destCityId);
+            boolean nextDay = inventoryRepository.findReachableCities(transferCityId, nextDate).contains(destCityId);
+            if (!sameDay && !nextDay) {
+                continue;
+            }
+
+            // Onward legs in departure order; next-day departures are offset by a day so the order holds
+            List<RouteLeg> onwardLegs = new ArrayList<>();
+            if (sameDay) {
+                onwardLegs.addAll(findLegs(transferCityId, destCityId, date, 0));
+            }
+            if (nextDay) {
+                onwardLegs.addAll(findLegs(transferCityId, destCityId, nextDate, MINUTES_PER_DAY));
+            }
+
+            for (RouteLeg first : findLegs(sourceCityId, transferCityId, date, 0)) {
+                int earliest = first.arrival() + minLayoverMinutes;
+                int latest = first.arrival() + maxLayoverMinutes;
+                for (int i = firstDepartingAtOrAfter(onwardLegs, earliest); i < onwardLegs.size(); i++) {
+                    RouteLeg second = onwardLegs.get(i);
+                    if (second.departure() > latest) {
+                        break;
+                    }
+                    if (!second.row().getTripId().equals(first.row().getTripId())) {
+                        connections.add(new Connection(transferCityId, first, second));
+                    }
+                }
+            }
+        }
+
+        connections.sort(Comparator.comparingInt((Connection c) -> c.first().departure())
+                .thenComparingInt(c -> c.second().arrival()));
+
+        Map<String, String> cityNames = new HashMap<>();
+        List<ItineraryResponseItem> itineraries = new ArrayList<>(Math.min(connections.size(), MAX_ITINERARIES));
+        for (Connection connection : connections.subList(0, Math.min(connections.size(), MAX_ITINERARIES))) {
+            String transferCityId = connection.transferCityId();
+            String transferName = cityNames.computeIfAbsent(transferCityId, this::getCityName);
+            SearchResponseItem firstLeg = createSearchResponseItem(connection.first().row(), sourceCityId, transferCityId,
+                    cityNames.computeIfAbsent(sourceCityId, this::getCityName), transferName);
+            SearchResponseItem secondLeg = createSearchResponseItem(connection.second().row(), transferCityId, destCityId,
+                    transferName, cityNames.computeIfAbsent(destCityId, this::getCityName));
+
+            itineraries.add(ItineraryResponseItem.builder()
+                    .legs(List.of(firstLeg, secondLeg))
+                    .transferCityId(transferCityId)
+                    .transferCity(transferName)
+                    .layoverMinutes(connection.second().departure() - connection.first().arrival())
+                    .totalPricePaise(firstLeg.getPricePaise() + secondLeg.getPricePaise())
+                    .availableSeats(Math.min(firstLeg.getAvailableSeats(), secondLeg.getAvailableSeats()))
+                    .build());
+        }
+        return itineraries;
+    }
+
+    // Legs of the trips serving a route on a date, in departure order, with times in minutes from dayOffset
+    private List<RouteLeg> findLegs(String sourceCityId, String destCityId, String date, int dayOffset) {
+        List<String> tripIds = findTripIds(sourceCityId, destCityId, date);
+        List<RouteLeg> legs = new ArrayList<>(tripIds.size());
+        for (String tripId : tripIds) {
+            TripSearchRow row = inventoryRepository.findSearchRow(tripId).orElse(null);
+            if (row == null) {
+                continue;
+            }
+            int from = row.boardingIndex(sourceCityId);
+            int to = row.alightingIndex(destCityId);
+            if (from >= 0 && to >= from) {
+                int departure = dayOffset + row.departureMinute(from);
+                legs.add(new RouteLeg(row, departure, departure + row.durationMinutes(from, to)));
+            }
+        }
+        return legs;
+    }
+
+    private static int firstDepartingAtOrAfter(List<RouteLeg> legs, int minute) {
+        int low = 0;
+        int high = legs.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (legs.get(mid).departure() < minute) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private record RouteLeg(TripSearchRow row, int departure, int arrival) {
+    }
+
+    private record Connection(String transferCityId, RouteLeg first, RouteLeg second) {
+    }
+
+    // Flexible-date search: one sub-search per date, run concurrently on virtual threads
+    public RangeSearchResponse searchRange(String sourceCityId, String destCityId, LocalDate fromDate, LocalDate toDate) {
+        if (toDate.isBefore(fromDate)) {
+            throw new IllegalArgumentException("End date must not be before start date");
+        }
+        if (ChronoUnit.DAYS.between(fromDate, toDate) >= MAX_RANGE_DAYS) {
+            throw new IllegalArgumentException("Date range cannot exceed " + MAX_RANGE_DAYS + " days");
+        }
+
+        List<LocalDate> dates = fromDate.datesUntil(toDate.plusDays(1)).toList();
+        List<Future<List<SearchResponseItem>>> results = new ArrayList<>(dates.size());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (LocalDate date : dates) {
+                results.add(executor.submit(() -> search(sourceCityId, destCityId, date.toString())));
+            }
+        }
+
+        // Each date's results are already ordered by departure, so concatenating in date order is enough
+        List<SearchResponseItem> trips = new ArrayList<>();
+        List<RangeSearchResponse.DateFare> cheapestFares = new ArrayList<>(dates.size());
+        for (int i = 0; i < dates.size(); i++) {
+            List<SearchResponseItem> items = getResult(results.get(i));
+            trips.addAll(items);
+
+            SearchResponseItem cheapest = items.stream()
+                    .filter(item -> item.getAvailableSeats() > 0)
+                    .min(Comparator.comparingLong(SearchResponseItem::getPricePaise))
+                    .orElse(null);
+            cheapestFares.add(RangeSearchResponse.DateFare.builder()
+                    .date(dates.get(i).toString())
+                    .tripId(cheapest != null ? cheapest.getTripId() : null)
+                    .pricePaise(cheapest != null ? cheapest.getPricePaise() : null)
+                    .build());
+        }
+
+        return RangeSearchResponse.builder()
+                .fromDate(fromDate.toString())
+                .toDate(toDate.toString())
+                .trips(trips)
+                .cheapestFares(cheapestFares)
+                .build();
+    }
+
+    private List<SearchResponseItem> getResult(Future<List<SearchResponseItem>> result) {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Search failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Search interrupted", e);
+        }
     }
 
     public SearchResponseItem getTripDetails(String tripId, String sourceCityId, String destCityId) {
-        Optional<Trip> tripOpt = getTrip(tripId);
-        if (tripOpt.isEmpty()) {
-            return null;
-        }
-        Trip trip = tripOpt.get();
-        return createSearchResponseItem(trip, sourceCityId, destCityId);
-    }
-
-    private SearchResponseItem createSearchResponseItem(Trip trip, String sourceCityId, String destCityId) {
-        Optional<City> sourceCity = cityRepository.findById(trip.getSourceCityId());
-        Optional<City> destCity = cityRepository.findById(trip.getDestCityId());
-        Optional<Bus> bus = busRepository.findById(trip.getBusId());
-
-        List<TripPart> tripParts = findSegmentsForRoute(trip.getTripId(), sourceCityId, destCityId);
-        
-        int availableSeats = getAvailableSeats(tripParts);
-        int totalCapacity = getTotalCapacity(tripParts);
-        System.out.println("Create Search Response Item: Trip Parts: " + tripParts);
-        System.out.println("Create Search Response Item: Available Seats: " + availableSeats);
-        System.out.println("Create Search Response Item: Total Capacity: " + totalCapacity);
-        
-        // Calculate price for 1 seat as estimate (using first matching trip part)
-        long pricePaise = 0;
-        if (sourceCity.isPresent() && destCity.isPresent() && !tripParts.isEmpty()) {
-            pricePaise = pricingService.calculatePrice(trip, sourceCity.get(), destCity.get(), 1, availableSeats, totalCapacity);
-        }
-        
-        // Get city names for display
-        Optional<City> searchSourceCity = cityRepository.findById(sourceCityId);
-        Optional<City> searchDestCity = cityRepository.findById(destCityId);
-        
-        // Get time information from the first trip part
-        String sourceTime = !tripParts.isEmpty() ? tripParts.get(0).getSourceTime() : null;
-        String destTime = !tripParts.isEmpty() ? tripParts.get(tripParts.size() - 1).getDestTime() : null;
-        
+        return inventoryRepository.findSearchRow(tripId)
+                .map(row -> createSearchResponseItem(row, sourceCityId, destCityId,
+                        getCityName(sourceCityId), getCityName(destCityId)))
+                .orElse(null);
+    }
+
+    private String getCityName(String cityId) {
+        return cityRepository.findById(cityId).map(City::getName).orElse(null);
+    }
+
+    private long estimatePrice(TripSearchRow row, int from, int to, int availableSeats) {
+        if (row.getSourceCity() == null || row.getDestCity() == null) {
+            return 0;
+        }
+        return pricingService.calculatePrice(row.getTrip(), row.getSourceCity(), row.getDestCity(), 1,
+                availableSeats, row.totalCapacity(from, to));
+    }
+
+    private SearchResponseItem createSearchResponseItem(TripSearchRow row, String sourceCityId, String destCityId,
+                                                        String sourceName, String destName) {
+        Trip trip = row.getTrip();
+        int from = row.boardingIndex(sourceCityId);
+        int to = row.alightingIndex(destCityId);
+        boolean onRoute = from >= 0 && to >= from;
+
+        // Live availability is the only per-row value that changes after ingest
+        int availableSeats = row.availableSeats(from, to);
+
+        // Calculate price for 1 seat as estimate
+        long pricePaise = onRoute ? estimatePrice(row, from, to, availableSeats) : 0;
+
+        // Get time information from the boarding and alighting parts
+        String sourceTime = onRoute ? row.getParts().get(from).getSourceTime() : null;
+        String destTime = onRoute ? row.getParts().get(to).getDestTime() : null;
+
         return SearchResponseItem.builder()
                 .tripId(trip.getTripId())
                 .busId(trip.getBusId())
                 .date(trip.getDate())
-                .source(searchSourceCity.map(City::getName).orElse(null))
-                .dest(searchDestCity.map(City::getName).orElse(null))
+                .source(sourceName)
+                .dest(destName)
                 .sourceCityId(sourceCityId)
                 .destCityId(destCityId)
                 .sourceTime(sourceTime)
@@ -148,7 +417,7 @@ public class InventoryService {
                 .capacity(trip.getCapacity())
                 .availableSeats(availableSeats)
                 .bus(SearchResponseItem.BusInfo.builder()
-                        .operator(bus.map(Bus::getOperator).orElse("Unknown"))
+                        .operator(row.getOperator())
                         .build())
                 .pricePaise(pricePaise)
                 .build();
@@ -5,21 +5,27 @@ import com.redbus.model.BookingStatus;
 import com.redbus.model.TripPart;
 import com.redbus.model.City;
 import com.redbus.model.Trip;
+import com.redbus.dto.BookingPage;
 import com.redbus.dto.BookingView;
 import com.redbus.repository.BookingRepository;
 import com.redbus.repository.InventoryRepository;
-import com.redbus.repository.LockRepository;
 import com.redbus.repository.CityRepository;
 import com.redbus.pricing.PricingService;
+import com.redbus.util.ExpiryQueue;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import java.util.List;
 import java.util.Optional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.UUID;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
@@ -27,68 +33,87 @@ import java.util.ArrayList;
 public class OrderService {
     private final BookingRepository bookingRepository;
     private final InventoryRepository inventoryRepository;
-    private final LockRepository lockRepository;
     private final InventoryService inventoryService;
     private final PricingService pricingService;
     private final CityRepository cityRepository;
 
+    // Releases each RESERVED booking when its hold expires, cancelled when the booking is confirmed
+    private final ExpiryQueue<String> reservationExpiry = new ExpiryQueue<>("reservation-expiry", this::expireBooking);
+
+    @PostConstruct
+    public void startReservationExpiry() {
+        reservationExpiry.start();
+    }
+
+    @PreDestroy
+    public void stopReservationExpiry() throws InterruptedException {
+        reservationExpiry.stop();
+    }
+
     public Booking createBooking(String userId, String tripId, String sourceCityId, String destCityId, int seats) {
-        String lockKey = "trip:" + tripId;
-        
-        if (!lockRepository.tryLock(lockKey)) {
-            throw new IllegalStateException("Trip is currently being booked by another user");
+        List<TripPart> tripParts = inventoryService.findSegmentsForRoute(tripId, sourceCityId, destCityId);
+
+        int availableSeats = inventoryService.getAvailableSeats(tripParts);
+        if (availableSeats < seats) {
+            throw new IllegalArgumentException("Insufficient seats available for trip");
         }
-        try {
-            List<TripPart> tripParts = inventoryService.findSegmentsForRoute(tripId, sourceCityId, destCityId);
 
-            int availableSeats = inventoryService.getAvailableSeats(tripParts);
-            if (availableSeats < seats) {
-                lockRepository.unlock(lockKey);
-                throw new IllegalArgumentException("Insufficient seats available for trip");
-            }
-    
-            // Calculate price for the booking
-            long pricePaise = computePrice(tripId, sourceCityId, destCityId, seats, availableSeats);
-    
-            // Create booking as RESERVED
-            Booking booking = Booking.builder()
-                    .bookingId(UUID.randomUUID().toString())
-                    .userId(userId)
-                    .tripId(tripId)
-                    .sourceCityId(sourceCityId)
-                    .destCityId(destCityId)
-                    .seats(seats)
-                    .status(BookingStatus.RESERVED)
-                    .createdAt(LocalDateTime.now())
-                    .expiresAt(LocalDateTime.now().plusMinutes(5)) // 5-minute TTL
-                    .pricePaise(pricePaise)
-                    .build();
-
-            // Atomically reserve seats for all trip parts
-            for (TripPart tripPart : tripParts) {
-                if (!inventoryRepository.decrementSeats(tripPart.getTripPartId(), seats)) {
-                    throw new IllegalStateException("Failed to reserve seats for trip part: " + tripPart.getTripPartId());
-                }
-            }
-            bookingRepository.save(booking);
+        // Calculate price for the booking
+        long pricePaise = computePrice(tripId, sourceCityId, destCityId, seats, availableSeats);
 
-            log.info("Created booking {} for trip {} with {} seats", booking.getBookingId(), tripId, seats);
-            return booking;
+        // Create booking as RESERVED
+        Booking booking = Booking.builder()
+                .bookingId(UUID.randomUUID().toString())
+                .userId(userId)
+                .tripId(tripId)
+                .sourceCityId(sourceCityId)
+                .destCityId(destCityId)
+                .seats(seats)
+                .status(BookingStatus.RESERVED)
+                .createdAt(LocalDateTime.now())
+                .expiresAt(LocalDateTime.now().plusMinutes(5)) // 5-minute TTL
+                .pricePaise(pricePaise)
+                .build();
 
-        } finally {
-            lockRepository.unlock(lockKey);
+        // Atomically reserve seats for all trip parts; concurrent bookings of the same trip
+        // only fail here when one of the parts has actually run out of seats
+        List<String> tripPartIds = tripParts.stream().map(TripPart::getTripPartId).toList();
+        if (!inventoryRepository.reserveSeats(tripPartIds, seats)) {
+            throw new IllegalArgumentException("Insufficient seats available for trip");
         }
+        boolean saved = false;
+        try {
+            bookingRepository.save(booking);
+            saved = true;
+            scheduleExpiry(booking);
+        } catch (RuntimeException e) {
+            // Without a saved booking, or an expiry for it, nothing would ever give the seats back
+            try {
+                if (!saved || bookingRepository.transitionStatus(booking.getBookingId(), BookingStatus.RESERVED,
+                        BookingStatus.EXPIRED)) {
+                    inventoryRepository.releaseSeats(tripPartIds, seats);
+                }
+            } catch (RuntimeException rollbackFailure) {
+                // The journal has stopped: seat counts are rebuilt from the bookings on restart
+                e.addSuppressed(rollbackFailure);
+            }
+            throw e;
+        }
+
+        log.info("Created booking {} for trip {} with {} seats", booking.getBookingId(), tripId, seats);
+        return booking;
     }
 
     public void confirmBooking(String bookingId, String paymentId) {
         Booking booking = bookingRepository.findById(bookingId)
                 .orElseThrow(() -> new IllegalArgumentException("Booking not found"));
 
-        if (booking.getStatus() != BookingStatus.RESERVED) {
+        // Races the expiry of the hold: only one of them gets the booking out of RESERVED
+        if (!bookingRepository.transitionStatus(bookingId, BookingStatus.RESERVED, BookingStatus.CONFIRMED)) {
             throw new IllegalStateException("Booking is not in RESERVED status");
         }
+        reservationExpiry.cancel(bookingId);
         booking.setPaymentId(paymentId);
-        booking.setStatus(BookingStatus.CONFIRMED);
         bookingRepository.save(booking);
         log.info("Confirmed booking {}", bookingId);
     }
@@ -97,29 +122,48 @@ public class OrderService {
         Booking booking = bookingRepository.findById(bookingId)
                 .orElseThrow(() -> new IllegalArgumentException("Booking not found"));
 
-        if (booking.getStatus() == BookingStatus.RESERVED) {
+        // Only the caller that moves the booking out of RESERVED gives its seats back, so a declined payment and
+        // the expiry of the hold cannot both release them, nor release seats a confirmed booking holds
+        if (bookingRepository.transitionStatus(bookingId, BookingStatus.RESERVED, BookingStatus.EXPIRED)) {
+            reservationExpiry.cancel(bookingId);
             // Release seats for all trip parts
             List<TripPart> tripParts = inventoryService.findSegmentsForRoute(booking.getTripId(), booking.getSourceCityId(), booking.getDestCityId());    
     
-            for (TripPart tripPart : tripParts) {
-                inventoryRepository.incrementSeats(tripPart.getTripPartId(), booking.getSeats());
-            }
-            bookingRepository.updateStatus(booking.getBookingId(), BookingStatus.EXPIRED);
+            inventoryRepository.releaseSeats(tripParts.stream().map(TripPart::getTripPartId).toList(), booking.getSeats());
             log.info("Realease booking {} and restored {} seats across {} trip parts", 
                     booking.getBookingId(), booking.getSeats(), tripParts.size());
         }
     }
 
-    public void expireReservedBookings() {
-        List<Booking> expiredBookings = bookingRepository.findExpiredReservations();
-        
-        for (Booking booking : expiredBookings) {
-            releaseBooking(booking.getBookingId());
+    // Schedules the expiry of every RESERVED booking, for bookings restored or generated at startup
+    public void resumeReservationExpiry() {
+        List<Booking> reserved = bookingRepository.findByStatus(BookingStatus.RESERVED);
+        reserved.forEach(this::scheduleExpiry);
+        log.info("Scheduled expiry of {} reserved bookings", reserved.size());
+    }
+
+    private void scheduleExpiry(Booking booking) {
+        if (booking.getExpiresAt() != null) {
+            long delayNanos = Duration.between(LocalDateTime.now(), booking.getExpiresAt()).toNanos();
+            reservationExpiry.schedule(booking.getBookingId(), delayNanos);
         }
-        
-        if (!expiredBookings.isEmpty()) {
-            bookingRepository.deleteExpiredReservations();
+    }
+
+    private void expireBooking(String bookingId) {
+        releaseBooking(bookingId);
+    }
+
+    // Recomputes seat availability from the bookings that hold seats (RESERVED and CONFIRMED), so counts restored
+    // from a snapshot and the journal replayed after it cannot drift from the bookings themselves
+    public void rebuildSeatCounts() {
+        Map<String, Integer> heldSeatsByPart = new HashMap<>();
+        for (BookingStatus status : List.of(BookingStatus.RESERVED, BookingStatus.CONFIRMED)) {
+            for (Booking booking : bookingRepository.findByStatus(status)) {
+                inventoryService.findSegmentsForRoute(booking.getTripId(), booking.getSourceCityId(), booking.getDestCityId())
+                        .forEach(part -> heldSeatsByPart.merge(part.getTripPartId(), booking.getSeats(), Integer::sum));
+            }
         }
+        inventoryRepository.resetSeatCounts(heldSeatsByPart);
     }
 
     public List<BookingView> getAllBookings(String userId) {
@@ -142,6 +186,32 @@ public class OrderService {
         return bookingViews;
     }
 
+    /**
+     * A page of the user's CONFIRMED bookings, newest first. The cursor is the id of the last booking of the
+     * previous page.
+     */
+    public BookingPage getBookingsPage(String userId, String cursor, int limit) {
+        List<Booking> bookings = bookingRepository.findByUserIdAndStatus(userId, BookingStatus.CONFIRMED, cursor, limit + 1);
+        boolean hasMore = bookings.size() > limit;
+        if (hasMore) {
+            bookings = bookings.subList(0, limit);
+        }
+
+        List<BookingView> items = new ArrayList<>(bookings.size());
+        for (Booking booking : bookings) {
+            try {
+                BookingView bookingView = buildBookingView(booking);
+                if (bookingView != null) {
+                    items.add(bookingView);
+                }
+            } catch (Exception e) {
+                log.error("Error processing booking {}: {}", booking.getBookingId(), e.getMessage());
+            }
+        }
+        String nextCursor = hasMore ? bookings.get(bookings.size() - 1).getBookingId() : null;
+        return new BookingPage(items, nextCursor);
+    }
+
     private long computePrice(String tripId, String sourceCityId, String destCityId, int seats, int availableSeats) {
         Optional<Trip> trip = inventoryService.getTrip(tripId);
         if (trip.isEmpty()) {
@@ -0,0 +1,111 @@
+package com.redbus.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * BCrypt hashing on its own bounded pool, so a login storm uses at most {@code hash-threads} cores and leaves the
+ * rest to search and booking. Callers wait for their hash; when {@code hash-queue} hashes are already waiting the
+ * call fails at once with {@link BusyException} instead of queueing without bound.
+ */
+@Component
+public class PasswordHasher {
+
+    private static final Pattern BCRYPT_COST = Pattern.compile("\\$2[aby]?\\$(\\d\\d)\\$");
+
+    private final int strength;
+    private final BCryptPasswordEncoder encoder;
+    private final ThreadPoolExecutor pool;
+
+    public PasswordHasher(@Value("${redbus.auth.bcrypt-strength:10}") int strength,
+                          @Value("${redbus.auth.hash-threads:0}") int threads,
+                          @Value("${redbus.auth.hash-queue:256}") int queueCapacity) {
+        this.strength = strength;
+        this.encoder = new BCryptPasswordEncoder(strength);
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "password-hasher-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    public String encode(String rawPassword) {
+        return run(() -> encoder.encode(rawPassword));
+    }
+
+    public boolean matches(String rawPassword, String passwordHash) {
+        return run(() -> encoder.matches(rawPassword, passwordHash));
+    }
+
+    /**
+     * Whether the hash was made with a different cost than the configured one and should be replaced.
+     */
+    public boolean needsRehash(String passwordHash) {
+        Matcher cost = BCRYPT_COST.matcher(passwordHash);
+        return cost.lookingAt() && Integer.parseInt(cost.group(1)) != strength;
+    }
+
+    /**
+     * Hashes in the background, for work nobody waits on; skipped rather than queued when the pool is busy.
+     */
+    public boolean encodeLater(String rawPassword, Consumer<String> onHashed) {
+        try {
+            pool.execute(() -> onHashed.accept(encoder.encode(rawPassword)));
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    private <T> T run(Callable<T> hashing) {
+        Future<T> result;
+        try {
+            result = pool.submit(hashing);
+        } catch (RejectedExecutionException e) {
+            throw new BusyException();
+        }
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Too many hashes are already waiting; the caller should try again later (503).
+     */
+    public static class BusyException extends RuntimeException {
+        public BusyException() {
+            super("Password hashing is at capacity");
+        }
+    }
+}
@@ -1,25 +1,59 @@
 package com.redbus.service;
 
+import com.redbus.gateway.BatchingPaymentClient;
+import com.redbus.gateway.ChargeRequest;
+import com.redbus.gateway.ChargeResult;
 import com.redbus.model.Payment;
 import com.redbus.model.PaymentStatus;
 import com.redbus.repository.PaymentRepository;
-import java.util.Optional;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
 
+/**
+ * Takes payments without holding the request thread: {@link #initiatePayment} stores the payment as INITIATED and
+ * returns. The charge goes to the gateway in a batch through the {@link BatchingPaymentClient}, and the booking is
+ * confirmed or released on the application task executor: virtual threads when
+ * {@code spring.threads.virtual.enabled} is set, the {@code spring.task.execution} pool otherwise. Callers follow
+ * the outcome by polling the payment or through {@link #awaitCompletion}.
+ */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class PaymentService {
     private final PaymentRepository paymentRepository;
     private final OrderService orderService;
+    private final BatchingPaymentClient gateway;
+    private final AsyncTaskExecutor processor;
+
+    // Completed with the final payment once processing ends; an entry exists only while a payment is in flight
+    private final Map<String, CompletableFuture<Payment>> inFlight = new ConcurrentHashMap<>();
+
+    public PaymentService(PaymentRepository paymentRepository,
+                          OrderService orderService,
+                          BatchingPaymentClient gateway,
+                          @Qualifier("applicationTaskExecutor") AsyncTaskExecutor processor) {
+        this.paymentRepository = paymentRepository;
+        this.orderService = orderService;
+        this.gateway = gateway;
+        this.processor = processor;
+    }
 
     public Payment initiatePayment(String bookingId, String userId, long amountPaise, String method) {
+        paymentRepository.findByBookingId(bookingId)
+                .filter(existing -> existing.getStatus() == PaymentStatus.SUCCESS)
+                .ifPresent(existing -> {
+                    throw new IllegalStateException("Booking " + bookingId + " is already paid");
+                });
+
         Payment payment = Payment.builder()
                 .paymentId(UUID.randomUUID().toString())
                 .bookingId(bookingId)
@@ -35,41 +69,91 @@ public class PaymentService {
         log.info("Initiated payment {} for booking {} with amount {} paise", 
                 payment.getPaymentId(), bookingId, amountPaise);
 
-        // Mock gateway processing
-        processPayment(payment);
+        // Registered before the charge is queued, so a waiter can never miss the completion
+        CompletableFuture<Payment> completion = new CompletableFuture<>();
+        inFlight.put(payment.getPaymentId(), completion);
+        gateway.submit(new ChargeRequest(payment.getPaymentId(), bookingId, amountPaise, method))
+                .whenComplete((result, error) -> {
+                    try {
+                        processor.execute(() -> finish(payment, completion, result, error));
+                    } catch (RejectedExecutionException e) {
+                        // The executor's queue is full: settle here rather than leave the payment INITIATED
+                        finish(payment, completion, result, error);
+                    }
+                });
 
         return payment;
     }
 
-    private void processPayment(Payment payment) {
-        // Simulate gateway processing delay
+    private void finish(Payment payment, CompletableFuture<Payment> completion, ChargeResult result,
+                        Throwable error) {
         try {
-            Thread.sleep(100);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+            settle(payment, result, error);
+        } catch (Exception e) {
+            log.error("Error settling payment {}", payment.getPaymentId(), e);
+        } finally {
+            inFlight.remove(payment.getPaymentId());
+            completion.complete(payment);
         }
+    }
+
+    public Optional<Payment> getPayment(String paymentId) {
+        return paymentRepository.findById(paymentId);
+    }
+
+    /**
+     * Completes with the payment once it has been processed, straight away if it already has been.
+     */
+    public CompletableFuture<Payment> awaitCompletion(String paymentId) {
+        CompletableFuture<Payment> completion = inFlight.get(paymentId);
+        if (completion != null) {
+            return completion;
+        }
+        return paymentRepository.findById(paymentId)
+                .map(CompletableFuture::completedFuture)
+                .orElseGet(() -> CompletableFuture.failedFuture(new IllegalArgumentException("Payment not found")));
+    }
+
+    private void settle(Payment payment, ChargeResult result, Throwable error) {
+        if (error != null) {
+            // Queue full or no answer from the gateway: the hold stays, so the user can pay again until it expires
+            paymentRepository.updateStatus(payment.getPaymentId(), PaymentStatus.FAILED);
+            log.warn("Payment {} for booking {} not submitted: {}", payment.getPaymentId(), payment.getBookingId(),
+                    error.getMessage());
+            return;
+        }
+
+        if (result.approved()) {
+            try {
+                paymentRepository.updateStatus(payment.getPaymentId(), PaymentStatus.SUCCESS);
+            } catch (IllegalStateException e) {
+                // Another payment already succeeded for this booking, which stays confirmed by that one
+                paymentRepository.updateStatus(payment.getPaymentId(), PaymentStatus.FAILED);
+                log.warn("Payment {} rejected: {}", payment.getPaymentId(), e.getMessage());
+                return;
+            }
 
-        // Mock gateway response - 90% success rate
-        boolean success = ThreadLocalRandom.current().nextDouble() < 0.9;
-        
-        if (success) {
-            payment.setStatus(PaymentStatus.SUCCESS);
-            payment.setUpdatedAt(LocalDateTime.now());
-            paymentRepository.updateStatus(payment.getPaymentId(), PaymentStatus.SUCCESS);
-            
             // Confirm booking on successful payment
-            orderService.confirmBooking(payment.getBookingId(), payment.getPaymentId());
+            try {
+                orderService.confirmBooking(payment.getBookingId(), payment.getPaymentId());
+            } catch (IllegalStateException | IllegalArgumentException e) {
+                // The hold expired first, before or while the gateway was working; its seats are gone, so the
+                // charge is void
+                paymentRepository.updateStatus(payment.getPaymentId(), PaymentStatus.FAILED);
+                log.warn("Payment {} voided, booking {} could not be confirmed: {}",
+                        payment.getPaymentId(), payment.getBookingId(), e.getMessage());
+                return;
+            }
             
             log.info("Payment {} succeeded for booking {}", payment.getPaymentId(), payment.getBookingId());
         } else {
-            payment.setStatus(PaymentStatus.FAILED);
-            payment.setUpdatedAt(LocalDateTime.now());
             paymentRepository.updateStatus(payment.getPaymentId(), PaymentStatus.FAILED);
             
             // Release booking on failed payment
             orderService.releaseBooking(payment.getBookingId());
             
-            log.info("Payment {} failed for booking {}", payment.getPaymentId(), payment.getBookingId());
+            log.info("Payment {} failed for booking {}: {}", payment.getPaymentId(), payment.getBookingId(),
+                    result.declineReason());
         }
     }
 }
@@ -0,0 +1,356 @@
+package com.redbus.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.redbus.dto.ImportReport;
+import com.redbus.model.PricingType;
+import com.redbus.model.ScheduledTrip;
+import com.redbus.model.Trip;
+import com.redbus.model.TripPart;
+import com.redbus.repository.BusRepository;
+import com.redbus.repository.CityRepository;
+import com.redbus.repository.InventoryRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Streams operator timetables from CSV or JSONL, keeping no more than the trip ids seen in memory. Each row is one
+ * trip part; the rows of a trip must be contiguous and in sequence order. Rows are validated against the city and
+ * bus repositories, and a trip with any bad row is rejected on its own while the rest of the file is imported in
+ * batches. A trip id that already exists, in the inventory or earlier in the file, is rejected too.
+ *
+ * <p>CSV files start with a header naming the columns ({@code tripId,busId,date,sequence,sourceCityId,destCityId,
+ * departureTime,arrivalTime,capacity,pricingType}) and have no quoted fields; JSONL rows are objects with the same
+ * field names.
+ */
+@Service
+@Slf4j
+public class TimetableImportService {
+
+    private static final int BATCH_TRIPS = 1000;
+    private static final int MAX_REPORTED_ERRORS = 1000;
+    private static final long PROGRESS_EVERY_ROWS = 100_000;
+
+    private final InventoryRepository inventoryRepository;
+    private final CityRepository cityRepository;
+    private final BusRepository busRepository;
+    private final ObjectMapper objectMapper;
+    private final Path importDirectory;
+
+    public TimetableImportService(InventoryRepository inventoryRepository,
+                                  CityRepository cityRepository,
+                                  BusRepository busRepository,
+                                  ObjectMapper objectMapper,
+                                  @Value("${redbus.import.dir:data/import}") Path importDirectory) {
+        this.inventoryRepository = inventoryRepository;
+        this.cityRepository = cityRepository;
+        this.busRepository = busRepository;
+        this.objectMapper = objectMapper;
+        this.importDirectory = importDirectory;
+    }
+
+    /**
+     * Imports a file from the import directory; the name may not point outside of it.
+     */
+    public ImportReport importFile(String fileName) throws IOException {
+        Path directory = importDirectory.toAbsolutePath().normalize();
+        Path file = directory.resolve(fileName).normalize();
+        if (!file.startsWith(directory) || !Files.isRegularFile(file)) {
+            throw new IllegalArgumentException("No timetable file " + fileName + " in the import directory");
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return importRows(reader, fileName);
+        }
+    }
+
+    public ImportReport importStream(InputStream input, String fileName) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8), 1 << 16)) {
+            return importRows(reader, fileName);
+        }
+    }
+
+    private ImportReport importRows(BufferedReader reader, String fileName) throws IOException {
+        boolean jsonLines = isJsonLines(fileName);
+        ImportRun run = new ImportRun(fileName);
+
+        Map<String, Integer> columns = null;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            run.lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            if (!jsonLines && columns == null) {
+                columns = parseHeader(line);
+                continue;
+            }
+            run.rowsRead++;
+
+            TimetableRow row;
+            try {
+                row = jsonLines ? objectMapper.readValue(line, TimetableRow.class) : parseCsvRow(line, columns);
+            } catch (IOException | RuntimeException e) {
+                run.error(null, "Unreadable row: " + e.getMessage());
+                continue;
+            }
+            run.accept(row);
+
+            if (run.rowsRead % PROGRESS_EVERY_ROWS == 0) {
+                log.info("Importing {}: {} rows, {} trips, {} errors, {} rows/s", fileName, run.rowsRead,
+                        run.tripsImported, run.errorCount, run.rowsPerSecond());
+            }
+        }
+        return run.finish();
+    }
+
+    private static boolean isJsonLines(String fileName) {
+        String name = fileName != null ? fileName.toLowerCase() : "";
+        if (name.endsWith(".jsonl") || name.endsWith(".ndjson")) {
+            return true;
+        }
+        if (name.endsWith(".csv")) {
+            return false;
+        }
+        throw new IllegalArgumentException("Timetable must be a .csv or .jsonl file");
+    }
+
+    private static Map<String, Integer> parseHeader(String line) {
+        String[] names = line.split(",");
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            columns.put(names[i].trim(), i);
+        }
+        for (String required : List.of("tripId", "busId", "date", "sequence", "sourceCityId", "destCityId",
+                "departureTime", "arrivalTime", "capacity")) {
+            if (!columns.containsKey(required)) {
+                throw new IllegalArgumentException("CSV header is missing column " + required);
+            }
+        }
+        return columns;
+    }
+
+    private static TimetableRow parseCsvRow(String line, Map<String, Integer> columns) {
+        String[] values = line.split(",", -1);
+        return new TimetableRow(
+                column(values, columns, "tripId"),
+                column(values, columns, "busId"),
+                column(values, columns, "date"),
+                Integer.parseInt(column(values, columns, "sequence")),
+                column(values, columns, "sourceCityId"),
+                column(values, columns, "destCityId"),
+                column(values, columns, "departureTime"),
+                column(values, columns, "arrivalTime"),
+                Integer.parseInt(column(values, columns, "capacity")),
+                column(values, columns, "pricingType"));
+    }
+
+    private static String column(String[] values, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        if (index == null || index >= values.length) {
+            return null;
+        }
+        String value = values[index].trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    // One trip part as it appears in the file
+    record TimetableRow(String tripId, String busId, String date, int sequence, String sourceCityId,
+                        String destCityId, String departureTime, String arrivalTime, int capacity,
+                        String pricingType) {
+    }
+
+    // State of one import: the trip being assembled, the pending batch and the counters for the report
+    private final class ImportRun {
+        private final String source;
+        private final long startNanos = System.nanoTime();
+        private final List<ScheduledTrip> batch = new ArrayList<>(BATCH_TRIPS);
+        private final List<ImportReport.RowError> errors = new ArrayList<>();
+        private final Set<String> tripIds = new HashSet<>();
+
+        private long lineNumber;
+        private long rowsRead;
+        private long tripsImported;
+        private long partsImported;
+        private long tripsRejected;
+        private long errorCount;
+
+        private Trip trip;
+        private List<TripPart> parts = new ArrayList<>();
+        private boolean tripRejected;
+
+        private ImportRun(String source) {
+            this.source = source;
+        }
+
+        private void accept(TimetableRow row) {
+            if (row.tripId() == null) {
+                error(null, "Missing tripId");
+                return;
+            }
+            if (trip == null || !trip.getTripId().equals(row.tripId())) {
+                completeTrip();
+                startTrip(row);
+            }
+            if (tripRejected) {
+                return;
+            }
+            String problem = validate(row);
+            if (problem != null) {
+                error(row.tripId(), problem);
+                tripRejected = true;
+                return;
+            }
+            parts.add(TripPart.builder()
+                    .tripPartId(row.tripId() + "_" + row.sequence())
+                    .tripId(row.tripId())
+                    .date(row.date())
+                    .sourceCityId(row.sourceCityId())
+                    .destCityId(row.destCityId())
+                    .sourceTime(LocalTime.parse(row.departureTime()).toString())
+                    .destTime(LocalTime.parse(row.arrivalTime()).toString())
+                    .sequence(row.sequence())
+                    .capacity(row.capacity())
+                    .availableSeats(row.capacity())
+                    .build());
+        }
+
+        private void startTrip(TimetableRow row) {
+            PricingType pricingType = PricingType.SLAB_50_FIRST_10KM_THEN_25_PER_10KM;
+            tripRejected = false;
+            try {
+                if (row.pricingType() != null) {
+                    pricingType = PricingType.valueOf(row.pricingType());
+                }
+            } catch (IllegalArgumentException e) {
+                error(row.tripId(), "Unknown pricingType " + row.pricingType());
+                tripRejected = true;
+            }
+            // Importing never replaces a trip: its seats may already be reserved or sold
+            if (!tripRejected && (!tripIds.add(row.tripId())
+                    || inventoryRepository.findTrip(row.tripId()).isPresent())) {
+                error(row.tripId(), "Trip " + row.tripId() + " already exists");
+                tripRejected = true;
+            }
+            trip = Trip.builder()
+                    .tripId(row.tripId())
+                    .busId(row.busId())
+                    .date(row.date())
+                    .sourceCityId(row.sourceCityId())
+                    .capacity(row.capacity())
+                    .pricingType(pricingType)
+                    .build();
+            parts = new ArrayList<>();
+        }
+
+        // Returns what is wrong with the row, or null when it continues the current trip correctly
+        private String validate(TimetableRow row) {
+            if (parts.isEmpty() && (row.busId() == null || busRepository.findById(row.busId()).isEmpty())) {
+                return "Unknown busId " + row.busId();
+            }
+            if (row.busId() != null && !row.busId().equals(trip.getBusId())) {
+                return "busId changes within the trip";
+            }
+            if (row.date() == null || !row.date().equals(trip.getDate())) {
+                return "date must be set and the same for every part of the trip";
+            }
+            try {
+                LocalDate.parse(row.date());
+                LocalTime.parse(row.departureTime());
+                LocalTime.parse(row.arrivalTime());
+            } catch (DateTimeParseException | NullPointerException e) {
+                return "Invalid date or time";
+            }
+            if (row.sequence() != parts.size() + 1) {
+                return "Expected sequence " + (parts.size() + 1) + " but found " + row.sequence();
+            }
+            if (row.sourceCityId() == null || cityRepository.findById(row.sourceCityId()).isEmpty()) {
+                return "Unknown sourceCityId " + row.sourceCityId();
+            }
+            if (row.destCityId() == null || cityRepository.findById(row.destCityId()).isEmpty()) {
+                return "Unknown destCityId " + row.destCityId();
+            }
+            if (!parts.isEmpty() && !parts.get(parts.size() - 1).getDestCityId().equals(row.sourceCityId())) {
+                return "sourceCityId does not continue from the previous part";
+            }
+            if (row.capacity() < 1) {
+                return "capacity must be at least 1";
+            }
+            return null;
+        }
+
+        private void completeTrip() {
+            if (trip == null) {
+                return;
+            }
+            if (tripRejected || parts.isEmpty()) {
+                tripsRejected++;
+            } else {
+                trip.setDestCityId(parts.get(parts.size() - 1).getDestCityId());
+                batch.add(new ScheduledTrip(trip, parts));
+                tripsImported++;
+                partsImported += parts.size();
+                if (batch.size() >= BATCH_TRIPS) {
+                    flush();
+                }
+            }
+            trip = null;
+        }
+
+        private void flush() {
+            if (!batch.isEmpty()) {
+                inventoryRepository.upsertBatch(List.copyOf(batch));
+                batch.clear();
+            }
+        }
+
+        private void error(String tripId, String message) {
+            errorCount++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(ImportReport.RowError.builder().line(lineNumber).tripId(tripId).message(message).build());
+            }
+        }
+
+        private long rowsPerSecond() {
+            long elapsedNanos = Math.max(1, System.nanoTime() - startNanos);
+            return rowsRead * 1_000_000_000L / elapsedNanos;
+        }
+
+        private ImportReport finish() {
+            completeTrip();
+            flush();
+            long elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+            ImportReport report = ImportReport.builder()
+                    .source(source)
+                    .rowsRead(rowsRead)
+                    .tripsImported(tripsImported)
+                    .partsImported(partsImported)
+                    .tripsRejected(tripsRejected)
+                    .errorCount(errorCount)
+                    .errors(errors)
+                    .elapsedMillis(elapsedMillis)
+                    .rowsPerSecond(rowsPerSecond())
+                    .build();
+            log.info("Imported {}: {} trips ({} parts) from {} rows in {} ms, {} rows/s, {} trips rejected, {} errors",
+                    source, tripsImported, partsImported, rowsRead, elapsedMillis, report.getRowsPerSecond(),
+                    tripsRejected, errorCount);
+            return report;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.redbus.service;
+
+import com.redbus.util.Digest;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Tokens whose signature has already been verified, with the user they name, so a repeat request skips the HMAC
+ * check. Entries are keyed by the SHA-256 of the token rather than the token itself and live until the token's
+ * {@code exp}. Memory is bounded: over {@code maxEntries}, the tokens closest to expiry are dropped first.
+ */
+public class VerifiedTokenCache {
+
+    private static final Comparator<Entry> EXPIRY_ORDER = Comparator.comparingLong(Entry::expiresAtMillis)
+            .thenComparing(Entry::key);
+
+    private final Map<Digest, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Entry, Boolean> byExpiry = new ConcurrentSkipListMap<>(EXPIRY_ORDER);
+    private final int maxEntries;
+
+    public VerifiedTokenCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * The user the token was verified for, or null when it is not cached or has expired.
+     */
+    public String get(String token) {
+        Entry entry = entries.get(Digest.sha256(token));
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAtMillis() <= System.currentTimeMillis()) {
+            remove(entry);
+            return null;
+        }
+        return entry.userId();
+    }
+
+    public void put(String token, String userId, long expiresAtMillis) {
+        long now = System.currentTimeMillis();
+        if (maxEntries <= 0 || expiresAtMillis <= now) {
+            return;
+        }
+        Entry entry = new Entry(Digest.sha256(token), userId, expiresAtMillis);
+        Entry previous = entries.put(entry.key(), entry);
+        if (previous != null) {
+            byExpiry.remove(previous);
+        }
+        byExpiry.put(entry, Boolean.TRUE);
+        evict(now);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    // Drops expired tokens, then the ones closest to expiry while over the limit
+    private void evict(long now) {
+        Map.Entry<Entry, Boolean> first;
+        while ((first = byExpiry.firstEntry()) != null) {
+            Entry oldest = first.getKey();
+            if (oldest.expiresAtMillis() > now && entries.size() <= maxEntries) {
+                return;
+            }
+            remove(oldest);
+        }
+    }
+
+    private void remove(Entry entry) {
+        byExpiry.remove(entry);
+        entries.remove(entry.key(), entry);
+    }
+
+    private record Entry(Digest key, String userId, long expiresAtMillis) {
+    }
+}
@@ -0,0 +1,67 @@
+package com.redbus.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A SHA-256 digest held as four longs: a fixed 32 bytes with cheap equals and hashCode, for keying maps by values
+ * that are long or sensitive.
+ */
+public record Digest(long w0, long w1, long w2, long w3) implements Comparable<Digest> {
+
+    private static final Comparator<Digest> ORDER = Comparator.comparingLong(Digest::w0)
+            .thenComparingLong(Digest::w1)
+            .thenComparingLong(Digest::w2)
+            .thenComparingLong(Digest::w3);
+
+    private static final MessageDigest SHA_256;
+
+    static {
+        try {
+            SHA_256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    public static Digest sha256(String value) {
+        MessageDigest digest = newDigest();
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        return of(digest.digest());
+    }
+
+    // Each part is length-prefixed, so ("ab", "c") and ("a", "bc") digest differently
+    public static Digest sha256(List<?> parts) {
+        MessageDigest digest = newDigest();
+        ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+        for (Object part : parts) {
+            byte[] bytes = String.valueOf(part).getBytes(StandardCharsets.UTF_8);
+            digest.update(length.clear().putInt(bytes.length).array());
+            digest.update(bytes);
+        }
+        return of(digest.digest());
+    }
+
+    @Override
+    public int compareTo(Digest other) {
+        return ORDER.compare(this, other);
+    }
+
+    // Cloning a prototype skips the provider lookup of MessageDigest.getInstance
+    private static MessageDigest newDigest() {
+        try {
+            return (MessageDigest) SHA_256.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException("SHA-256 digest cannot be cloned", e);
+        }
+    }
+
+    private static Digest of(byte[] hash) {
+        ByteBuffer buffer = ByteBuffer.wrap(hash);
+        return new Digest(buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong());
+    }
+}
@@ -0,0 +1,92 @@
+package com.redbus.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Fires a callback for each key when its deadline passes. Deadlines sit in a {@link DelayQueue}, so a worker
+ * thread sleeps until exactly the next one is due instead of scanning. Cancelling only forgets the key; its queue
+ * entry is dropped when it comes due, which keeps cancel O(1).
+ */
+@Slf4j
+public class ExpiryQueue<K> {
+
+    private final DelayQueue<Deadline<K>> queue = new DelayQueue<>();
+    private final Map<K, Deadline<K>> scheduled = new ConcurrentHashMap<>();
+    private final String name;
+    private final Consumer<K> onExpiry;
+
+    private volatile Thread worker;
+
+    public ExpiryQueue(String name, Consumer<K> onExpiry) {
+        this.name = name;
+        this.onExpiry = onExpiry;
+    }
+
+    // Schedules the key, replacing any deadline it already had; a delay of zero or less fires right away
+    public void schedule(K key, long delayNanos) {
+        Deadline<K> deadline = new Deadline<>(key, System.nanoTime() + delayNanos);
+        scheduled.put(key, deadline);
+        queue.put(deadline);
+    }
+
+    public boolean cancel(K key) {
+        return scheduled.remove(key) != null;
+    }
+
+    public int size() {
+        return scheduled.size();
+    }
+
+    public void start() {
+        worker = new Thread(this::run, name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public void stop() throws InterruptedException {
+        Thread current = worker;
+        if (current != null) {
+            worker = null;
+            current.interrupt();
+            current.join();
+        }
+    }
+
+    private void run() {
+        while (worker != null) {
+            Deadline<K> deadline;
+            try {
+                deadline = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            // Skip entries that were cancelled or replaced by a later schedule
+            if (scheduled.remove(deadline.key(), deadline)) {
+                try {
+                    onExpiry.accept(deadline.key());
+                } catch (RuntimeException e) {
+                    log.error("Error expiring {} in {}", deadline.key(), name, e);
+                }
+            }
+        }
+    }
+
+    private record Deadline<K>(K key, long dueNanos) implements Delayed {
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueNanos, ((Deadline<?>) other).dueNanos);
+        }
+    }
+}